@@ -55,14 +55,12 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.entertailion.android.launcher.apps.AllAppsModel;
 import com.entertailion.android.launcher.apps.ApplicationInfo;
-import com.entertailion.android.launcher.apps.VirtualAppInfo;
+import com.entertailion.android.launcher.apps.RecentApps;
 import com.entertailion.android.launcher.bookmark.BookmarkAdapter;
 import com.entertailion.android.launcher.bookmark.BookmarkInfo;
 import com.entertailion.android.launcher.database.DatabaseHelper;
-import com.entertailion.android.launcher.database.ItemsTable;
-import com.entertailion.android.launcher.database.RecentAppsTable;
-import com.entertailion.android.launcher.database.RowsTable;
 import com.entertailion.android.launcher.database.SpotlightTable;
 import com.entertailion.android.launcher.item.AllItemAdapter;
 import com.entertailion.android.launcher.item.ItemInfo;
@@ -73,6 +71,7 @@ import com.entertailion.android.launcher.spotlight.AllSpotlightAdapter;
 import com.entertailion.android.launcher.spotlight.SpotlightInfo;
 import com.entertailion.android.launcher.utils.Analytics;
 import com.entertailion.android.launcher.utils.Utils;
+import com.entertailion.android.launcher.widget.PrefixIndex;
 
 /**
  * Utility class to display various dialogs for the main launcher
@@ -99,15 +98,10 @@ public class Dialogs {
 				AbsListView absListView = (AbsListView) v;
 				if (event.getAction() == KeyEvent.ACTION_DOWN) {
 					if (keyCode >= KeyEvent.KEYCODE_A && keyCode <= KeyEvent.KEYCODE_Z) {
-						// Jump to first item that starts with the typed letter
-						char letter = Utils.keyCodeToLetter(keyCode);
-						int count = absListView.getAdapter().getCount();
-						for (int i = 0; i < count; i++) {
-							ItemInfo itemInfo = (ItemInfo) absListView.getAdapter().getItem(i);
-							if (itemInfo.getTitle().toUpperCase().charAt(0) == letter) {
-								absListView.setSelection(i);
-								break;
-							}
+						// Jump to first item that starts with the typed letters
+						int position = PrefixIndex.getInstance(absListView.getAdapter()).onLetter(Utils.keyCodeToLetter(keyCode));
+						if (position != -1) {
+							absListView.setSelection(position);
 						}
 						return true;
 					} else if (keyCode == KeyEvent.KEYCODE_MEDIA_NEXT) {
@@ -269,15 +263,14 @@ public class Dialogs {
 	 * apps.
 	 * 
 	 * @param context
-	 * @param applications
 	 */
-	public static void displayAllApps(final Launcher context, final ArrayList<ApplicationInfo> applications) {
+	public static void displayAllApps(final Launcher context) {
 		final Dialog dialog = new Dialog(context);
 		dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
 		dialog.setContentView(R.layout.apps_grid);
 
 		final GridView gridView = (GridView) dialog.findViewById(R.id.grid);
-		gridView.setAdapter(new AllItemAdapter(context, getApplications(context, applications, false)));
+		gridView.setAdapter(new AllItemAdapter(context, AllAppsModel.getInstance(context).getAllApps()));
 		gridView.setOnItemClickListener(new android.widget.AdapterView.OnItemClickListener() {
 
 			@Override
@@ -288,7 +281,7 @@ public class Dialogs {
 				dialog.dismiss();
 				if (itemInfo instanceof ApplicationInfo) {
 					ApplicationInfo applicationInfo = (ApplicationInfo) itemInfo;
-					RecentAppsTable.persistRecentApp(context, applicationInfo);
+					RecentApps.getInstance(context).onLaunched(applicationInfo.getIntent());
 				}
 			}
 
@@ -326,73 +319,6 @@ public class Dialogs {
 		Analytics.logEvent(Analytics.DIALOG_ALL_APPS);
 	}
 
-	/**
-	 * Utility method to add virtual apps to the list of installed Android apps.
-	 * 
-	 * @param context
-	 * @param applications
-	 * @param addAllApps
-	 * @return
-	 */
-	private static ArrayList<ItemInfo> getApplications(final Launcher context, ArrayList<ApplicationInfo> applications, boolean addAllApps) {
-		ArrayList<ItemInfo> apps = new ArrayList<ItemInfo>(applications);
-
-		// add notifications as a virtual app
-		VirtualAppInfo notifications = new VirtualAppInfo();
-		notifications.setType(DatabaseHelper.VIRTUAL_NOTIFICATIONS_TYPE);
-		notifications.setTitle(context.getString(R.string.notifications));
-		notifications.setDrawable(context.getResources().getDrawable(R.drawable.notifications));
-		apps.add(notifications);
-
-		// add bookmarks as a virtual app
-		VirtualAppInfo bookmarks = new VirtualAppInfo();
-		bookmarks.setType(DatabaseHelper.VIRTUAL_BROWSER_BOOKMARKS_TYPE);
-		bookmarks.setTitle(context.getString(R.string.bookmarks));
-		bookmarks.setDrawable(context.getResources().getDrawable(R.drawable.bookmarks));
-		apps.add(bookmarks);
-
-		// add browser history as a virtual app
-		VirtualAppInfo browserHistory = new VirtualAppInfo();
-		browserHistory.setType(DatabaseHelper.VIRTUAL_BROWSER_HISTORY_TYPE);
-		browserHistory.setTitle(context.getString(R.string.browser_history));
-		browserHistory.setDrawable(context.getResources().getDrawable(R.drawable.browser_history));
-		apps.add(browserHistory);
-
-		if (addAllApps) {
-			// add all apps as a virtual app
-			VirtualAppInfo allApps = new VirtualAppInfo();
-			allApps.setType(DatabaseHelper.VIRTUAL_ALL_APPS_TYPE);
-			allApps.setTitle(context.getString(R.string.all_apps));
-			allApps.setDrawable(context.getResources().getDrawable(R.drawable.all_apps));
-			apps.add(allApps);
-		}
-
-		// add spotlight web apps as a virtual app
-		VirtualAppInfo spotlightWebApps = new VirtualAppInfo();
-		spotlightWebApps.setType(DatabaseHelper.VIRTUAL_SPOTLIGHT_WEB_APPS_TYPE);
-		spotlightWebApps.setTitle(context.getString(R.string.spotlight_web_apps));
-		spotlightWebApps.setDrawable(context.getResources().getDrawable(R.drawable.spotlight));
-		apps.add(spotlightWebApps);
-
-		// add live TV as a virtual app
-		VirtualAppInfo liveTV = new VirtualAppInfo();
-		liveTV.setType(DatabaseHelper.VIRTUAL_LIVE_TV_TYPE);
-		liveTV.setTitle(context.getString(R.string.live_tv));
-		liveTV.setDrawable(context.getResources().getDrawable(R.drawable.livetv));
-		apps.add(liveTV);
-
-		Collections.sort(apps, new Comparator<ItemInfo>() {
-
-			@Override
-			public int compare(ItemInfo lhs, ItemInfo rhs) {
-				return lhs.getTitle().toLowerCase().compareTo(rhs.getTitle().toLowerCase());
-			}
-
-		});
-
-		return apps;
-	}
-
 	/**
 	 * Display the list of browser bookmarks. Allow user to load bookmarked web
 	 * site.
@@ -623,9 +549,8 @@ public class Dialogs {
 	 * app to an existing row or a new row.
 	 * 
 	 * @param context
-	 * @param applications
 	 */
-	public static void displayAddApps(final Launcher context, final ArrayList<ApplicationInfo> applications) {
+	public static void displayAddApps(final Launcher context) {
 		final Dialog dialog = new Dialog(context);
 		dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
 		dialog.setContentView(R.layout.add_apps_grid);
@@ -655,7 +580,7 @@ public class Dialogs {
 
 		});
 		final GridView gridView = (GridView) dialog.findViewById(R.id.grid);
-		gridView.setAdapter(new AllItemAdapter(context, getApplications(context, applications, true)));
+		gridView.setAdapter(new AllItemAdapter(context, AllAppsModel.getInstance(context).getAddApps()));
 		gridView.setOnItemClickListener(new android.widget.AdapterView.OnItemClickListener() {
 
 			@Override
@@ -842,13 +767,12 @@ public class Dialogs {
 							int rowPosition = 0;
 							if (currentRow) {
 								rowId = context.getCurrentGalleryId();
-								ArrayList<ItemInfo> items = ItemsTable.getItems(context, rowId);
-								rowPosition = items.size(); // in last
+								rowPosition = LauncherModel.getInstance(context).getItemCount(rowId); // in last
 															// position
 															// for selected
 															// row
 							} else {
-								rowId = (int) RowsTable.insertRow(context, name, 0, RowInfo.FAVORITE_TYPE);
+								rowId = LauncherModel.getInstance(context).insertRow(name, 0, RowInfo.FAVORITE_TYPE);
 								rowPosition = 0;
 							}
 							Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -869,7 +793,7 @@ public class Dialogs {
 								}
 							}
 							
-							ItemsTable.insertItem(context, rowId, rowPosition, bookmark.getTitle(), intent, icon, DatabaseHelper.SHORTCUT_TYPE);
+							LauncherModel.getInstance(context).insertItem(rowId, rowPosition, bookmark.getTitle(), intent, icon, DatabaseHelper.SHORTCUT_TYPE);
 						} catch (Exception e) {
 							Log.e(LOG_TAG, "displayAddBrowserBookmark", e);
 						}
@@ -1179,7 +1103,7 @@ public class Dialogs {
 		});
 
 		List<String> list = new ArrayList<String>();
-		final ArrayList<RowInfo> rows = RowsTable.getRows(context);
+		final ArrayList<RowInfo> rows = LauncherModel.getInstance(context).getRows();
 		if (rows != null) {
 			for (RowInfo row : rows) {
 				list.add(row.getTitle());
@@ -1222,8 +1146,7 @@ public class Dialogs {
 							for (RowInfo row : rows) {
 								if (row.getTitle().equals(selectedRow)) {
 									rowId = row.getId();
-									ArrayList<ItemInfo> items = ItemsTable.getItems(context, rowId);
-									rowPosition = items.size(); // in last
+									rowPosition = LauncherModel.getInstance(context).getItemCount(rowId); // in last
 																// position
 																// for selected
 																// row
@@ -1232,13 +1155,13 @@ public class Dialogs {
 							}
 						}
 					} else {
-						rowId = (int) RowsTable.insertRow(context, rowName, 0, RowInfo.FAVORITE_TYPE);
+						rowId = LauncherModel.getInstance(context).insertRow(rowName, 0, RowInfo.FAVORITE_TYPE);
 						rowPosition = 0;
 					}
 
 					Intent intent = new Intent(Intent.ACTION_VIEW);
 					intent.setData(Uri.parse(uri));
-					ItemsTable.insertItem(context, rowId, rowPosition, shortcutName, intent, icon, DatabaseHelper.SHORTCUT_TYPE);
+					LauncherModel.getInstance(context).insertItem(rowId, rowPosition, shortcutName, intent, icon, DatabaseHelper.SHORTCUT_TYPE);
 					Toast.makeText(context, context.getString(R.string.shortcut_installed, shortcutName), Toast.LENGTH_SHORT).show();
 					context.reloadAllGalleries();
 
@@ -1291,7 +1214,7 @@ public class Dialogs {
 		dialog.setContentView(R.layout.row_list);
 
 		final ListView listView = (ListView) dialog.findViewById(R.id.rowList);
-		ArrayList<RowInfo> persistedRows = RowsTable.getRows(context);
+		ArrayList<RowInfo> persistedRows = LauncherModel.getInstance(context).getRows();
 		final ArrayList<RowInfo> rows = new ArrayList<RowInfo>();
 		// Add in reverse order to match favorite rows order
 		for (RowInfo rowInfo : persistedRows) {
@@ -1312,7 +1235,7 @@ public class Dialogs {
 						int counter = 0;
 						for (int i = rowAdapter.getCount() - 1; i >= 0; i--) {
 							RowInfo currentRowInfo = (RowInfo) parent.getAdapter().getItem(i);
-							RowsTable.updateRow(context, currentRowInfo.getId(), currentRowInfo.getTitle(), counter, currentRowInfo.getType());
+							LauncherModel.getInstance(context).updateRow(currentRowInfo.getId(), currentRowInfo.getTitle(), counter, currentRowInfo.getType());
 							counter++;
 						}
 					} catch (Exception e) {
@@ -17,6 +17,7 @@
 package com.entertailion.android.launcher;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import android.app.Activity;
 import android.app.Dialog;
@@ -55,19 +56,20 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.entertailion.android.launcher.apps.ApplicationInfo;
+import com.entertailion.android.launcher.apps.ApplicationsLoader;
 import com.entertailion.android.launcher.apps.AppsAdapter;
+import com.entertailion.android.launcher.apps.RecentApps;
 import com.entertailion.android.launcher.appwidget.CellLayout;
 import com.entertailion.android.launcher.appwidget.LauncherAppWidgetHost;
 import com.entertailion.android.launcher.appwidget.Workspace;
 import com.entertailion.android.launcher.database.DatabaseHelper;
-import com.entertailion.android.launcher.database.ItemsTable;
-import com.entertailion.android.launcher.database.RecentAppsTable;
-import com.entertailion.android.launcher.database.RowsTable;
 import com.entertailion.android.launcher.item.ItemAdapter;
 import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.row.RowInfo;
 import com.entertailion.android.launcher.utils.Analytics;
+import com.entertailion.android.launcher.utils.ThumbnailCache;
 import com.entertailion.android.launcher.utils.Utils;
+import com.entertailion.android.launcher.weather.WeatherUpdater;
 import com.entertailion.android.launcher.widget.Clock;
 import com.entertailion.android.launcher.widget.CustomAdapterView;
 import com.entertailion.android.launcher.widget.CustomAdapterView.OnItemClickListener;
@@ -90,7 +92,8 @@ import com.entertailion.android.launcher.widget.Weather;
  * @author leon_nicholls
  * 
  */
-public class Launcher extends Activity implements OnItemSelectedListener, OnItemClickListener, OnItemLongClickListener, ScrollViewListener {
+public class Launcher extends Activity implements OnItemSelectedListener, OnItemClickListener, OnItemLongClickListener, ScrollViewListener,
+		ApplicationsLoader.Callbacks {
 	private static final String LOG_TAG = "Launcher";
 
 	private static final String KEY_SAVE_GALLERY_ROW = "gallery.row";
@@ -129,7 +132,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	private static final int APPWIDGET_HOST_ID = 1023;
 
 	private ImageView topGradient, bottomGradient, selector, arrowUp, arrowDown, coverImageView, menuImageView;
-	private RowGallery recentsGallery, currentGallery;
+	private RowGallery recentsGallery, suggestedGallery, currentGallery;
 	private int currentGalleryRow;
 	private TextView itemName, layerName;
 	private String lastItemName, lastLayerName;
@@ -203,6 +206,9 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 
 		handleIntent(getIntent());
 
+		// the apps are loaded in the background
+		((LauncherApplication) getApplicationContext()).addApplicationsListener(this);
+
 		// Set the context for Google Analytics
 		Analytics.createAnalytics(this);
 		Utils.logDeviceInfo(this);
@@ -213,6 +219,8 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 		super.onStart();
 		// Start Google Analytics for this activity
 		Analytics.startAnalytics(this);
+		// update the weather while the launcher is visible
+		WeatherUpdater.getInstance(this).setVisible(true);
 	}
 
 	@Override
@@ -220,6 +228,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 		super.onStop();
 		// Stop Google Analytics for this activity
 		Analytics.stopAnalytics(this);
+		WeatherUpdater.getInstance(this).setVisible(false);
 	}
 
 	@Override
@@ -265,6 +274,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	@Override
 	public void onDestroy() {
 		super.onDestroy();
+		((LauncherApplication) getApplicationContext()).removeApplicationsListener(this);
 		disconnectFromLauncherService();
 	}
 
@@ -403,36 +413,125 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void bindRecents() {
 		ArrayList<ApplicationInfo> recents = ((LauncherApplication) getApplicationContext()).getRecents();
-		AppsAdapter adapter = new AppsAdapter(this, recents, infiniteScrolling);
 		if (recentsGallery == null) {
+			AppsAdapter adapter = new AppsAdapter(this, new ArrayList<ApplicationInfo>(recents), infiniteScrolling);
 			recentsGallery = new RowGallery(this, -1, getString(R.string.layer_recent_apps), adapter);
 			scrollViewContent.addView(recentsGallery);
-		} else {
-			recentsGallery.setAdapter(adapter);
+		} else if (!recentsGallery.getAdapter().hasItems(recents)) {
+			recentsGallery.updateItems(recents);
+		}
+	}
+
+	/**
+	 * Bind the list of suggested apps with the row above the recent apps. The
+	 * row is only displayed when there are suggestions.
+	 */
+	private void bindSuggestions() {
+		ArrayList<ApplicationInfo> suggestions = ((LauncherApplication) getApplicationContext()).getSuggestions();
+		if (suggestions.size() == 0) {
+			if (suggestedGallery != null) {
+				scrollViewContent.removeView(suggestedGallery);
+				suggestedGallery = null;
+			}
+		} else if (suggestedGallery == null) {
+			AppsAdapter adapter = new AppsAdapter(this, new ArrayList<ApplicationInfo>(suggestions), infiniteScrolling);
+			suggestedGallery = new RowGallery(this, -2, getString(R.string.layer_suggested_apps), adapter);
+			scrollViewContent.addView(suggestedGallery, scrollViewContent.indexOfChild(recentsGallery));
+		} else if (!suggestedGallery.getAdapter().hasItems(suggestions)) {
+			suggestedGallery.updateItems(suggestions);
 		}
 	}
 
 	/**
-	 * Bind the rows of favorite apps configured by the user.
+	 * Check if a row is generated from the app usage instead of being
+	 * configured by the user.
+	 * 
+	 * @param gallery
+	 * @return
+	 */
+	private boolean isVirtualGallery(RowGallery gallery) {
+		return gallery != null && (gallery == recentsGallery || gallery == suggestedGallery);
+	}
+
+	/**
+	 * Get the number of rows configured by the user.
+	 * 
+	 * @return
+	 */
+	private int getFavoriteRowCount() {
+		int count = scrollViewContent.getChildCount();
+		if (recentsGallery != null) {
+			count--;
+		}
+		if (suggestedGallery != null) {
+			count--;
+		}
+		return count;
+	}
+
+	/**
+	 * Bind the rows of favorite apps configured by the user. The rows on
+	 * screen are compared with the model and only the rows that changed are
+	 * added, removed, moved or rebound.
 	 */
 	private void bindItems() {
 		try {
-			ArrayList<RowInfo> rows = RowsTable.getRows(this);
+			// Index the rows currently on screen
+			HashMap<Integer, RowGallery> galleries = new HashMap<Integer, RowGallery>();
+			int count = scrollViewContent.getChildCount();
+			for (int i = 0; i < count; i++) {
+				RowGallery gallery = (RowGallery) scrollViewContent.getChildAt(i);
+				if (!isVirtualGallery(gallery)) {
+					galleries.put((Integer) gallery.getTag(R.id.row_id), gallery);
+				}
+			}
+
+			// Get the rows together with their items
+			ArrayList<RowInfo> rows = LauncherModel.getInstance(this).getRowsWithItems();
+			int index = 0;
 			if (rows != null) {
-				// Get the items for each row
-				for (RowInfo row : rows) {
+				// the row with the highest position is at the top
+				for (int i = rows.size() - 1; i >= 0; i--) {
+					RowInfo row = rows.get(i);
 					Log.d(LOG_TAG, "row=" + row.getPosition());
+					ArrayList<ItemInfo> rowItems = row.getItems();
+					if (rowItems == null) {
+						continue;
+					}
 					try {
-						ArrayList<ItemInfo> rowItems = ItemsTable.getItems(this, row.getId());
 						mapApplicationIcons(rowItems);
-						ItemAdapter adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
-						RowGallery gallery = new RowGallery(this, row.getId(), row.getTitle().toUpperCase(), adapter);
-						scrollViewContent.addView(gallery, 0);
+						String title = row.getTitle().toUpperCase();
+						RowGallery gallery = galleries.remove(row.getId());
+						if (gallery == null) {
+							ItemAdapter adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
+							gallery = new RowGallery(this, row.getId(), title, adapter);
+							scrollViewContent.addView(gallery, index);
+						} else {
+							if (!title.equals(gallery.getTag(R.id.gallery_title))) {
+								gallery.setTitle(title);
+							}
+							// items can be changed in place by the model
+							if (!Integer.valueOf(row.getVersion()).equals(gallery.getTag(R.id.row_version))
+									|| !gallery.getAdapter().hasItems(rowItems)) {
+								gallery.updateItems(rowItems);
+							}
+							if (scrollViewContent.getChildAt(index) != gallery) {
+								scrollViewContent.removeView(gallery);
+								scrollViewContent.addView(gallery, index);
+							}
+						}
+						gallery.setVersion(row.getVersion());
+						index++;
 					} catch (Exception e) {
 						Log.e(LOG_TAG, "bindItems", e);
 					}
 				}
 			}
+
+			// Remove the rows that no longer exist
+			for (RowGallery gallery : galleries.values()) {
+				scrollViewContent.removeView(gallery);
+			}
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "bindItems", e);
 		}
@@ -472,7 +571,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 				itemInfo.invoke(this);
 				if (itemInfo instanceof ApplicationInfo) {
 					ApplicationInfo applicationInfo = (ApplicationInfo) itemInfo;
-					RecentAppsTable.persistRecentApp(this, applicationInfo);
+					RecentApps.getInstance(this).onLaunched(applicationInfo.getIntent());
 				}
 			} catch (Exception e) {
 				Log.e(LOG_TAG, "onItemClick", e);
@@ -551,10 +650,10 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuDeleteRow(MenuItem deleteRow) {
 		if (deleteRow != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot delete recents row
 				deleteRow.setEnabled(false);
-			} else if (scrollViewContent.getChildCount() == 2) {
+			} else if (getFavoriteRowCount() == 1) {
 				// cannot delete last custom row
 				deleteRow.setEnabled(false);
 			} else {
@@ -570,10 +669,10 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuDeleteItem(MenuItem deleteItem) {
 		if (deleteItem != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot remote item from recents row
 				deleteItem.setEnabled(false);
-			} else if (scrollViewContent.getChildCount() == 2 && currentGallery.getAdapter().getCount() == 1) {
+			} else if (getFavoriteRowCount() == 1 && currentGallery.getAdapter().getCount() == 1) {
 				// cannot delete last item of last custom row
 				deleteItem.setEnabled(false);
 			} else {
@@ -589,7 +688,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuMoveItem(MenuItem moveItem) {
 		if (moveItem != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot move item from recents row
 				moveItem.setEnabled(false);
 			} else {
@@ -605,11 +704,11 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuChangeRowOrder(MenuItem changeRowOrderItem) {
 		if (changeRowOrderItem != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot move item from recents row
 				changeRowOrderItem.setEnabled(false);
 			} else {
-				ArrayList<RowInfo> rows = RowsTable.getRows(this);
+				ArrayList<RowInfo> rows = LauncherModel.getInstance(this).getRows();
 				if (rows != null && rows.size() > 1) {
 					changeRowOrderItem.setEnabled(true);
 				} else {
@@ -626,7 +725,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuChangeRowName(MenuItem changeRowNameItem) {
 		if (changeRowNameItem != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot move item from recents row
 				changeRowNameItem.setEnabled(false);
 			} else {
@@ -642,7 +741,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	private void updateMenuUninstallApp(MenuItem uninstallApp) {
 		if (uninstallApp != null) {
-			if (currentGallery == recentsGallery) {
+			if (isVirtualGallery(currentGallery)) {
 				// cannot remote item from recents row
 				uninstallApp.setEnabled(false);
 			} else {
@@ -684,7 +783,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	@Override
 	public boolean onPrepareOptionsMenu(Menu menu) {
 		boolean showItems = false;
-		if (currentGallery != null && currentGallery != recentsGallery) {
+		if (currentGallery != null && !isVirtualGallery(currentGallery)) {
 			showItems = true;
 		}
 		Log.d(LOG_TAG, "onPrepareOptionsMenu: " + showItems);
@@ -806,7 +905,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 		Log.d(LOG_TAG, "createMenu=" + currentGallery);
 		if (!addAllMenuItems) {
 			if (currentGallery != null) {
-				if (currentGallery != recentsGallery) {
+				if (!isVirtualGallery(currentGallery)) {
 					addAllMenuItems = true;
 				}
 			}
@@ -847,8 +946,7 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 			Dialogs.displayAbout(this);
 			return true;
 		case MENU_ADD_APP:
-			ArrayList<ApplicationInfo> applications = ((LauncherApplication) getApplicationContext()).getApplications();
-			Dialogs.displayAddApps(this, applications);
+			Dialogs.displayAddApps(this);
 			return true;
 		case MENU_DELETE_ITEM:
 			handleDeleteItem();
@@ -1118,24 +1216,25 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 			// create a new row
 			try {
 				int rowId = DatabaseHelper.NO_ID;
-				ArrayList<RowInfo> rows = RowsTable.getRows(this);
+				LauncherModel launcherModel = LauncherModel.getInstance(this);
+				ArrayList<RowInfo> rows = launcherModel.getRows();
 				if (rows != null) {
 					int counter = 0;
 					// adjust the positions of existing rows
 					int mappedGalleryRow = rows.size() - currentGalleryRow - 1;
 					for (int i = 0; i < rows.size(); i++) {
 						RowInfo row = rows.get(i);
-						RowsTable.updateRow(this, row.getId(), row.getTitle(), counter, row.getType());
+						launcherModel.updateRow(row.getId(), row.getTitle(), counter, row.getType());
 						counter++;
 						if (i == mappedGalleryRow) {
-							rowId = (int) RowsTable.insertRow(this, rowName, mappedGalleryRow + 1, RowInfo.FAVORITE_TYPE);
+							rowId = launcherModel.insertRow(rowName, mappedGalleryRow + 1, RowInfo.FAVORITE_TYPE);
 							counter++;
 						}
 					}
 				}
 				itemInfo.persistInsert(this, rowId, 0);
 
-				ArrayList<ItemInfo> rowItems = ItemsTable.getItems(this, rowId);
+				ArrayList<ItemInfo> rowItems = launcherModel.getItems(rowId);
 				mapApplicationIcons(rowItems);
 				ItemAdapter adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
 				currentGallery = new RowGallery(this, rowId, rowName.toUpperCase(), adapter);
@@ -1167,8 +1266,8 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 					currentItemInfo.persistUpdate(this, rowId, counter);
 					counter++;
 				}
-				// get the persisted list of items for the current row
-				ArrayList<ItemInfo> rowItems = ItemsTable.getItems(this, rowId);
+				// get the updated list of items for the current row
+				ArrayList<ItemInfo> rowItems = LauncherModel.getInstance(this).getItems(rowId);
 				mapApplicationIcons(rowItems);
 				adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
 				currentGallery.setAdapter(adapter);
@@ -1210,20 +1309,28 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 * Give the items their application icons.
 	 * 
 	 * @param items
+	 * @return true if any item received an icon
 	 */
-	private void mapApplicationIcons(ArrayList<ItemInfo> items) {
+	private boolean mapApplicationIcons(ArrayList<ItemInfo> items) {
+		boolean mapped = false;
 		if (items != null) {
 			for (ItemInfo itemInfo : items) {
 				if (itemInfo instanceof ApplicationInfo) {
 					ApplicationInfo applicationInfo = (ApplicationInfo) itemInfo;
 					if (applicationInfo.getDrawable() == null) {
-						applicationInfo.setDrawable(getApplicationDrawable(itemInfo.getIntent()));
-						applicationInfo.setFiltered(true); // already resized
-															// icon
+						// the icon could still be loading
+						Drawable icon = getApplicationDrawable(itemInfo.getIntent());
+						if (icon != null) {
+							applicationInfo.setDrawable(icon);
+							applicationInfo.setFiltered(true); // already resized
+																// icon
+							mapped = true;
+						}
 					}
 				}
 			}
 		}
+		return mapped;
 	}
 
 	/**
@@ -1233,20 +1340,15 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 * @return
 	 */
 	private Drawable getApplicationDrawable(Intent intent) {
-		if (intent != null) {
-			ArrayList<ApplicationInfo> applications = ((LauncherApplication) getApplicationContext()).getApplications();
-			for (ApplicationInfo applicationInfo : applications) {
-				if (applicationInfo.getIntent() != null
-						&& applicationInfo.getIntent().getComponent().getClassName().equals(intent.getComponent().getClassName())) {
-					Drawable icon = applicationInfo.getDrawable();
-					if (!applicationInfo.getFiltered()) {
-						icon = Utils.createIconThumbnail(icon, this);
-						applicationInfo.setDrawable(icon);
-						applicationInfo.setFiltered(true);
-					}
-					return icon;
-				}
+		ApplicationInfo applicationInfo = ((LauncherApplication) getApplicationContext()).getApplication(intent);
+		if (applicationInfo != null) {
+			Drawable icon = applicationInfo.getDrawable();
+			if (icon != null && !applicationInfo.getFiltered()) {
+				icon = ThumbnailCache.getInstance(this).getIconThumbnail(icon);
+				applicationInfo.setDrawable(icon);
+				applicationInfo.setFiltered(true);
 			}
+			return icon;
 		}
 		return null;
 	}
@@ -1271,9 +1373,10 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 			Log.d(LOG_TAG, "rowId=" + rowId);
 			GalleryAdapter<ItemInfo> adapter = (GalleryAdapter<ItemInfo>) currentGallery.getAdapter();
 			ItemInfo currentItemInfo = (ItemInfo) adapter.getItem(position);
-			ItemsTable.deleteItem(this, currentItemInfo.getId());
-			// get the persisted list of items for the current row
-			ArrayList<ItemInfo> rowItems = ItemsTable.getItems(this, rowId);
+			LauncherModel launcherModel = LauncherModel.getInstance(this);
+			launcherModel.deleteItem(currentItemInfo.getId());
+			// get the updated list of items for the current row
+			ArrayList<ItemInfo> rowItems = launcherModel.getItems(rowId);
 			mapApplicationIcons(rowItems);
 			adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
 			currentGallery.setAdapter(adapter);
@@ -1295,13 +1398,14 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 		try {
 			int rowId = (Integer) currentGallery.getTag(R.id.row_id);
 			Log.d(LOG_TAG, "rowId=" + rowId);
-			RowsTable.deleteRow(this, rowId);
+			LauncherModel launcherModel = LauncherModel.getInstance(this);
+			launcherModel.deleteRow(rowId);
 			// Adjust other row positions
-			ArrayList<RowInfo> rows = RowsTable.getRows(this);
+			ArrayList<RowInfo> rows = launcherModel.getRows();
 			if (rows != null) {
 				for (int i = 0; i < rows.size(); i++) {
 					RowInfo row = rows.get(i);
-					RowsTable.updateRow(this, row.getId(), row.getTitle(), i, row.getType());
+					launcherModel.updateRow(row.getId(), row.getTitle(), i, row.getType());
 				}
 			}
 
@@ -1325,11 +1429,12 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 			int rowId = (Integer) currentGallery.getTag(R.id.row_id);
 			Log.d(LOG_TAG, "rowId=" + rowId);
 			// Adjust other row positions
-			ArrayList<RowInfo> rows = RowsTable.getRows(this);
+			LauncherModel launcherModel = LauncherModel.getInstance(this);
+			ArrayList<RowInfo> rows = launcherModel.getRows();
 			if (rows != null) {
 				for (RowInfo row : rows) {
 					if (row.getId() == rowId) {
-						RowsTable.updateRow(this, row.getId(), name, row.getPosition(), row.getType());
+						launcherModel.updateRow(row.getId(), name, row.getPosition(), row.getType());
 						break;
 					}
 				}
@@ -1354,10 +1459,9 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 			RowGallery rowGallery = (RowGallery) scrollViewContent.getChildAt(i);
 			int id = (Integer) rowGallery.getTag(R.id.row_id);
 			if (rowId == id) {
-				ArrayList<ItemInfo> rowItems = ItemsTable.getItems(this, rowId);
+				ArrayList<ItemInfo> rowItems = LauncherModel.getInstance(this).getItems(rowId);
 				mapApplicationIcons(rowItems);
-				GalleryAdapter<ItemInfo> adapter = new ItemAdapter(this, rowItems, infiniteScrolling);
-				rowGallery.setAdapter(adapter);
+				rowGallery.updateItems(rowItems);
 				currentGallery.setSelectedItemPosition(position);
 				break;
 			}
@@ -1369,16 +1473,63 @@ public class Launcher extends Activity implements OnItemSelectedListener, OnItem
 	 */
 	public void reloadAllGalleries() {
 		Log.d(LOG_TAG, "reloadAllGalleries");
-		scrollViewContent.removeAllViews();
-		recentsGallery = null;
-		currentGalleryRow = 0;
 		updateUserInterface();
+		bindGalleries();
+	}
+
+	/**
+	 * Bind the rows and the recent apps with the latest data.
+	 */
+	private void bindGalleries() {
 		bindItems();
 		((LauncherApplication) getApplicationContext()).loadRecents();
 		bindRecents();
+		bindSuggestions();
+		if (currentGalleryRow >= scrollViewContent.getChildCount()) {
+			// the selected row no longer exists
+			currentGalleryRow = 0;
+			scrollView.scrollTo(0, 0);
+			scrollView.resetScroll();
+		}
 		updateStatus();
-		scrollView.scrollTo(0, 0);
-		scrollView.resetScroll();
+	}
+
+	@Override
+	public void onApplicationsLoaded(ArrayList<ApplicationInfo> applications) {
+		Log.d(LOG_TAG, "onApplicationsLoaded");
+		bindGalleries();
+	}
+
+	@Override
+	public void onApplicationIconsLoaded(ArrayList<ApplicationInfo> applications) {
+		int count = scrollViewContent.getChildCount();
+		for (int i = 0; i < count; i++) {
+			RowGallery gallery = (RowGallery) scrollViewContent.getChildAt(i);
+			GalleryAdapter adapter = gallery.getAdapter();
+			if (isVirtualGallery(gallery)) {
+				// the recents and suggestions icons are set by the application
+				adapter.notifyDataSetChanged();
+			} else {
+				ArrayList<ItemInfo> items = new ArrayList<ItemInfo>(adapter.getRealCount());
+				for (int j = 0; j < adapter.getRealCount(); j++) {
+					items.add((ItemInfo) adapter.getItem(j));
+				}
+				if (mapApplicationIcons(items)) {
+					adapter.notifyDataSetChanged();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void onPackageLoaded(String packageName, ArrayList<ApplicationInfo> applications) {
+		Log.d(LOG_TAG, "onPackageLoaded: " + packageName);
+		bindGalleries();
+		// the icons of the package could have changed
+		int count = scrollViewContent.getChildCount();
+		for (int i = 0; i < count; i++) {
+			((RowGallery) scrollViewContent.getChildAt(i)).getAdapter().notifyDataSetChanged();
+		}
 	}
 
 	/**
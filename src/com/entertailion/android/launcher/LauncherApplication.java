@@ -17,6 +17,7 @@ package com.entertailion.android.launcher;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 
 import android.app.Activity;
@@ -27,20 +28,27 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.graphics.Typeface;
 import android.util.Log;
 
+import com.entertailion.android.launcher.apps.AllAppsModel;
 import com.entertailion.android.launcher.apps.ApplicationInfo;
-import com.entertailion.android.launcher.database.ItemsTable;
-import com.entertailion.android.launcher.database.RecentAppsTable;
-import com.entertailion.android.launcher.database.RowsTable;
+import com.entertailion.android.launcher.apps.ApplicationsLoader;
+import com.entertailion.android.launcher.apps.LaunchStats;
+import com.entertailion.android.launcher.apps.RecentApps;
+import com.entertailion.android.launcher.database.DatabaseHelper;
+import com.entertailion.android.launcher.database.DatabaseManager;
 import com.entertailion.android.launcher.item.ItemInfo;
-import com.entertailion.android.launcher.row.RowInfo;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+import com.entertailion.android.launcher.utils.BitmapCache;
+import com.entertailion.android.launcher.utils.HttpRequestHelper;
+import com.entertailion.android.launcher.utils.IconLoader;
 import com.entertailion.android.launcher.utils.LocationData;
+import com.entertailion.android.launcher.utils.ThumbnailCache;
 import com.entertailion.android.launcher.utils.Utils;
 import com.entertailion.android.launcher.weather.WeatherSet;
+import com.entertailion.android.launcher.weather.WeatherSnapshot;
+import com.entertailion.android.launcher.weather.WeatherUpdater;
 
 /**
  * Application shared data.
@@ -48,7 +56,7 @@ import com.entertailion.android.launcher.weather.WeatherSet;
  * @author leon_nicholls
  * 
  */
-public class LauncherApplication extends Application {
+public class LauncherApplication extends Application implements ApplicationsLoader.Callbacks {
 
 	private static final String LOG_TAG = "LauncherApplication";
 
@@ -58,6 +66,8 @@ public class LauncherApplication extends Application {
 	private static final String WEATHER_COUNTRY_NAME = "weather.country_name";
 	private static final String WEATHER_COUNTRY_CODE = "weather.country_code";
 
+	private static final int MAX_SUGGESTIONS = 5;
+
 	private Typeface lightTypeface = null;
 	private Typeface thinTypeface = null;
 	private Typeface mediumTypeface = null;
@@ -65,17 +75,128 @@ public class LauncherApplication extends Application {
 	private WeatherSet weatherSet = null;
 	private LocationData locationData;
 	private final BroadcastReceiver applicationsReceiver = new ApplicationsIntentReceiver();
-	private ArrayList<ApplicationInfo> applications;
-	private ArrayList<ApplicationInfo> recents;
+	private ArrayList<ApplicationInfo> applications = new ArrayList<ApplicationInfo>();
+	// index of the apps by component, maintained with the list of apps
+	private HashMap<ComponentName, ApplicationInfo> applicationIndex = new HashMap<ComponentName, ApplicationInfo>();
+	private ArrayList<ApplicationInfo> recents = new ArrayList<ApplicationInfo>();
+	private ArrayList<ApplicationInfo> suggestions = new ArrayList<ApplicationInfo>();
+	private ApplicationsLoader applicationsLoader;
+	private boolean applicationsLoaded;
+	private final ArrayList<ApplicationsLoader.Callbacks> applicationsListeners = new ArrayList<ApplicationsLoader.Callbacks>();
+	private DatabaseManager databaseManager;
+	private LauncherModel launcherModel;
+	private BitmapCache bitmapCache;
+	private IconLoader iconLoader;
+	private BackgroundScheduler backgroundScheduler;
+	private WeatherUpdater weatherUpdater;
+	private ThumbnailCache thumbnailCache;
+	private LaunchStats launchStats;
+	private RecentApps recentApps;
+	private AllAppsModel allAppsModel;
 
 	@Override
 	public void onCreate() {
 		super.onCreate();
+		// keep a single database connection open for the lifetime of the app
+		databaseManager = new DatabaseManager(this);
+		launcherModel = new LauncherModel(this);
+		bitmapCache = new BitmapCache(this);
+		iconLoader = new IconLoader(this, bitmapCache);
+		thumbnailCache = new ThumbnailCache(this);
+		launchStats = new LaunchStats(this);
+		recentApps = new RecentApps(this, launchStats);
+		allAppsModel = new AllAppsModel(this);
+		backgroundScheduler = new BackgroundScheduler(this);
+		weatherUpdater = new WeatherUpdater(this);
+		// all the network requests share a single pooled HTTP client
+		HttpRequestHelper.setTimeouts(getResources().getInteger(R.integer.http_connect_timeout), getResources().getInteger(R.integer.http_read_timeout));
 		locationData = Utils.getLocationData(this);
+		// the last weather data is displayed until the next update
+		weatherSet = WeatherSnapshot.load(this);
 		registerIntentReceivers();
 		// cache app data and icons for performance
+		applicationsLoader = new ApplicationsLoader(this, this);
 		loadApplications();
-		loadRecents();
+	}
+
+	@Override
+	public void onTerminate() {
+		databaseManager.logTimings();
+		databaseManager.close();
+		bitmapCache.logStats();
+		thumbnailCache.logStats();
+		backgroundScheduler.logHistory();
+		super.onTerminate();
+	}
+
+	@Override
+	public void onLowMemory() {
+		bitmapCache.logStats();
+		bitmapCache.evictAll();
+		super.onLowMemory();
+	}
+
+	/**
+	 * Get the shared database manager.
+	 * 
+	 * @return
+	 */
+	public DatabaseManager getDatabaseManager() {
+		return databaseManager;
+	}
+
+	/**
+	 * Get the in-memory model of the rows and items.
+	 * 
+	 * @return
+	 */
+	public LauncherModel getLauncherModel() {
+		return launcherModel;
+	}
+
+	/**
+	 * Get the shared memory cache for the item icons.
+	 * 
+	 * @return
+	 */
+	public BitmapCache getBitmapCache() {
+		return bitmapCache;
+	}
+
+	/**
+	 * Get the shared background loader for the item icons.
+	 * 
+	 * @return
+	 */
+	public IconLoader getIconLoader() {
+		return iconLoader;
+	}
+
+	/**
+	 * Get the shared cache for the icon thumbnails.
+	 * 
+	 * @return
+	 */
+	public ThumbnailCache getThumbnailCache() {
+		return thumbnailCache;
+	}
+
+	/**
+	 * Get the shared scheduler for the background jobs.
+	 * 
+	 * @return
+	 */
+	public BackgroundScheduler getBackgroundScheduler() {
+		return backgroundScheduler;
+	}
+
+	/**
+	 * Get the scheduler for the weather updates.
+	 * 
+	 * @return
+	 */
+	public WeatherUpdater getWeatherUpdater() {
+		return weatherUpdater;
 	}
 
 	/**
@@ -206,109 +327,229 @@ public class LauncherApplication extends Application {
 	}
 
 	/**
-	 * Get the list of Android apps installed in the system.
+	 * Get the list of Android apps installed in the system. The list is empty
+	 * until the background loader has delivered the apps; register a listener
+	 * to be notified when the apps are available.
 	 * 
 	 * @return
 	 */
 	public ArrayList<ApplicationInfo> getApplications() {
-		if (applications == null) {
-			loadApplications();
-			loadRecents();
-		}
 		return applications;
 	}
 
+	/**
+	 * Find the app that launches a component.
+	 * 
+	 * @param intent
+	 * @return the app or null if the intent does not match an installed app
+	 */
+	public ApplicationInfo getApplication(Intent intent) {
+		if (intent == null || intent.getComponent() == null) {
+			return null;
+		}
+		return applicationIndex.get(intent.getComponent());
+	}
+
+	/**
+	 * Replace the list of apps and rebuild the component index.
+	 * 
+	 * @param applications
+	 */
+	private void setApplications(ArrayList<ApplicationInfo> applications) {
+		HashMap<ComponentName, ApplicationInfo> index = new HashMap<ComponentName, ApplicationInfo>(applications.size() * 2);
+		for (ApplicationInfo application : applications) {
+			index.put(application.getIntent().getComponent(), application);
+		}
+		this.applications = applications;
+		applicationIndex = index;
+	}
+
 	/**
 	 * Get the list of recent apps invoked by the user.
 	 * 
 	 * @return
 	 */
 	public ArrayList<ApplicationInfo> getRecents() {
-		if (recents == null) {
-			loadApplications();
-			loadRecents();
-		}
 		return recents;
 	}
 
 	/**
-	 * Utility method to force a reload of the list of system applications.
+	 * Get the shared list of the recent apps launched by the user.
+	 * 
+	 * @return
 	 */
-	public void loadApplications() {
-		PackageManager manager = getPackageManager();
+	public RecentApps getRecentApps() {
+		return recentApps;
+	}
 
-		Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-		mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+	/**
+	 * Get the list of apps suggested for the current time of day.
+	 * 
+	 * @return
+	 */
+	public ArrayList<ApplicationInfo> getSuggestions() {
+		return suggestions;
+	}
 
-		final List<ResolveInfo> apps = manager.queryIntentActivities(mainIntent, 0);
+	/**
+	 * Get the shared launch statistics of the apps.
+	 * 
+	 * @return
+	 */
+	public LaunchStats getLaunchStats() {
+		return launchStats;
+	}
 
-		if (apps != null) {
-			Collections.sort(apps, new ResolveInfo.DisplayNameComparator(manager));
-			final int count = apps.size();
+	/**
+	 * Get the shared sorted list of the apps for the all apps dialogs.
+	 * 
+	 * @return
+	 */
+	public AllAppsModel getAllAppsModel() {
+		return allAppsModel;
+	}
 
-			if (applications == null) {
-				applications = new ArrayList<ApplicationInfo>(count);
-			}
-			applications.clear();
+	/**
+	 * Check if the apps have been loaded.
+	 * 
+	 * @return
+	 */
+	public boolean isApplicationsLoaded() {
+		return applicationsLoaded;
+	}
+
+	/**
+	 * Add a listener for the results of the background app loader.
+	 * 
+	 * @param listener
+	 */
+	public void addApplicationsListener(ApplicationsLoader.Callbacks listener) {
+		if (!applicationsListeners.contains(listener)) {
+			applicationsListeners.add(listener);
+		}
+	}
+
+	/**
+	 * Remove a listener for the results of the background app loader.
+	 * 
+	 * @param listener
+	 */
+	public void removeApplicationsListener(ApplicationsLoader.Callbacks listener) {
+		applicationsListeners.remove(listener);
+	}
+
+	/**
+	 * Utility method to force a reload of the list of system applications. The
+	 * apps are loaded on a background thread.
+	 */
+	public void loadApplications() {
+		applicationsLoader.startLoading();
+	}
 
-			for (int i = 0; i < count; i++) {
-				ApplicationInfo application = new ApplicationInfo();
-				ResolveInfo info = apps.get(i);
+	@Override
+	public void onApplicationsLoaded(ArrayList<ApplicationInfo> applications) {
+		setApplications(applications);
+		allAppsModel.setApplications(applications);
+		applicationsLoaded = true;
+		loadRecents();
+		for (ApplicationsLoader.Callbacks listener : new ArrayList<ApplicationsLoader.Callbacks>(applicationsListeners)) {
+			listener.onApplicationsLoaded(applications);
+		}
+	}
 
-				application.setTitle(info.loadLabel(manager).toString());
-				Intent intent = new Intent(Intent.ACTION_MAIN);
-				intent.addCategory(Intent.CATEGORY_LAUNCHER);
-				intent.setComponent(new ComponentName(info.activityInfo.applicationInfo.packageName, info.activityInfo.name));
-				intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
-				application.setIntent(intent);
-				application.setDrawable(info.activityInfo.loadIcon(manager));
+	@Override
+	public void onApplicationIconsLoaded(ArrayList<ApplicationInfo> applications) {
+		// the recents and suggestions are separate instances of the apps
+		ArrayList<ApplicationInfo> copies = new ArrayList<ApplicationInfo>(recents);
+		copies.addAll(suggestions);
+		for (ApplicationInfo recent : copies) {
+			if (recent.getDrawable() == null) {
+				ApplicationInfo application = getApplication(recent.getIntent());
+				if (application != null && application.getDrawable() != null) {
+					recent.setDrawable(application.getDrawable());
+					recent.setFiltered(application.getFiltered());
+				}
+			}
+		}
+		for (ApplicationsLoader.Callbacks listener : new ArrayList<ApplicationsLoader.Callbacks>(applicationsListeners)) {
+			listener.onApplicationIconsLoaded(applications);
+		}
+	}
 
-				applications.add(application);
+	@Override
+	public void onPackageLoaded(String packageName, ArrayList<ApplicationInfo> packageApplications) {
+		// patch a copy of the list since it could be used by adapters
+		ArrayList<ApplicationInfo> patched = new ArrayList<ApplicationInfo>(applications.size() + packageApplications.size());
+		for (ApplicationInfo application : applications) {
+			if (!packageName.equals(application.getIntent().getComponent().getPackageName())) {
+				patched.add(application);
+			}
+		}
+		for (ApplicationInfo application : packageApplications) {
+			int index = Collections.binarySearch(patched, application, ItemInfo.ALPHA_COMPARATOR);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			patched.add(index, application);
+		}
+		setApplications(patched);
+		allAppsModel.onPackageLoaded(packageName, packageApplications);
+
+		// drop the cached icons of the package items; they are mapped again
+		// from the reloaded apps
+		ArrayList<ItemInfo> items = launcherModel.getPackageItems(packageName);
+		if (items != null) {
+			for (ItemInfo itemInfo : items) {
+				if (itemInfo instanceof ApplicationInfo) {
+					itemInfo.setDrawable(null);
+					((ApplicationInfo) itemInfo).setFiltered(false);
+				}
 			}
 		}
+		loadRecents();
+		for (ApplicationsLoader.Callbacks listener : new ArrayList<ApplicationsLoader.Callbacks>(applicationsListeners)) {
+			listener.onPackageLoaded(packageName, packageApplications);
+		}
 	}
 
 	/**
-	 * Utility method to force a reload of the recent apps.
+	 * Utility method to force a reload of the recent and suggested apps.
 	 */
 	public void loadRecents() {
-		if (recents == null) {
-			recents = new ArrayList<ApplicationInfo>();
-		} else {
-			recents.clear();
+		if (!applicationsLoaded) {
+			// the persisted recents can only be matched once the apps are
+			// available
+			return;
 		}
+		recents.clear();
+		suggestions.clear();
 
 		try {
-			ArrayList<ApplicationInfo> persistedRecents = RecentAppsTable.getAllRecentApps(this);
-			if (persistedRecents == null || persistedRecents.size() == 0) {
-				// first time, persist the system recent apps
-				RecentAppsTable.persistRecents(this);
-				persistedRecents = RecentAppsTable.getAllRecentApps(this);
+			// the recent apps are only read from the database the first time;
+			// the most used apps are first and the apps without launch
+			// statistics keep their most recent first order
+			List<Intent> intents = recentApps.getRecents();
+			Collections.reverse(intents);
+			for (Intent intent : launchStats.rank(intents)) {
+				ApplicationInfo recent = createRecent(intent);
+				if (recent != null) {
+					recents.add(recent);
+				} else {
+					// remove recent apps that don't exist anymore
+					recentApps.remove(intent);
+				}
 			}
-
-			// get persisted recent apps
-			if (persistedRecents != null) {
-				for (ApplicationInfo recent : persistedRecents) {
-					boolean found = false;
-					for (ApplicationInfo application : applications) {
-						if (recent.getIntent() != null && application.getIntent() != null && recent.getIntent().getComponent() != null
-								&& application.getIntent().getComponent() != null
-								&& recent.getIntent().getComponent().getClassName().equals(application.getIntent().getComponent().getClassName())) {
-							recent.setTitle(application.getTitle());
-							recent.setDrawable(application.getDrawable());
-							recents.add(recent);
-							found = true;
-							break;
-						}
-					}
-					if (!found) {
-						// remove recent apps that don't exist anymore
-						try {
-							RecentAppsTable.deleteRecentApp(this, recent.getId());
-						} catch (Exception e) {
-							Log.e(LOG_TAG, "loadRecents", e);
-						}
-					}
+			// only suggest the apps that are not in the recents row
+			ArrayList<Intent> recentIntents = new ArrayList<Intent>(recents.size());
+			for (ApplicationInfo recent : recents) {
+				recentIntents.add(recent.getIntent());
+			}
+			for (Intent intent : launchStats.getSuggestions(MAX_SUGGESTIONS, System.currentTimeMillis(), recentIntents)) {
+				ApplicationInfo suggestion = createRecent(intent);
+				if (suggestion != null) {
+					suggestions.add(suggestion);
+				} else {
+					recentApps.remove(intent);
 				}
 			}
 
@@ -325,7 +566,7 @@ public class LauncherApplication extends Application {
 						break;
 					}
 				}
-				if (!found) {
+				if (!found && applications.size() > 0) {
 					// else grab the first app
 					recents.add(applications.get(0));
 				}
@@ -335,6 +576,24 @@ public class LauncherApplication extends Application {
 		}
 	}
 
+	/**
+	 * Create a separate instance of an installed app for the recents and
+	 * suggestions.
+	 * 
+	 * @param intent
+	 * @return the app or null if it is not installed
+	 */
+	private ApplicationInfo createRecent(Intent intent) {
+		ApplicationInfo application = getApplication(intent);
+		if (application == null) {
+			return null;
+		}
+		ApplicationInfo recent = new ApplicationInfo(DatabaseHelper.NO_ID, 0, application.getTitle(), intent);
+		recent.setDrawable(application.getDrawable());
+		recent.setFiltered(application.getFiltered());
+		return recent;
+	}
+
 	/**
 	 * Registers for app updates.
 	 */
@@ -360,53 +619,16 @@ public class LauncherApplication extends Application {
 				String packageName = intent.getData().getSchemeSpecificPart();
 				boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
 				Log.d(LOG_TAG, "replacing=" + replacing);
-				if (!replacing && intent.getAction().equals(Intent.ACTION_PACKAGE_REMOVED)) {
-					// Remove app from rows
-					ArrayList<RowInfo> rows = RowsTable.getRows(context);
-					if (rows != null) {
-						for (RowInfo row : rows) {
-							ArrayList<ItemInfo> rowItems = ItemsTable.getItems(context, row.getId());
-							if (rowItems != null) {
-								for (ItemInfo itemInfo : rowItems) {
-									if (itemInfo instanceof ApplicationInfo) {
-										try {
-											if (itemInfo.getIntent().getComponent().getPackageName().equals(packageName)) {
-
-												if (rowItems.size() == 1) {
-													// TODO what if last row?
-													if (rows.size() > 1) {
-														ItemsTable.deleteItem(context, itemInfo.getId());
-														RowsTable.deleteRow(context, row.getId());
-													}
-												} else {
-													ItemsTable.deleteItem(context, itemInfo.getId());
-												}
-											}
-										} catch (Exception e) {
-											Log.d(LOG_TAG, "onReceive", e);
-										}
-									}
-								}
-							}
-						}
-					}
-					// Remove app from recents
-					ArrayList<ApplicationInfo> persistedRecents = RecentAppsTable.getAllRecentApps(context);
-					if (persistedRecents != null) {
-						for (ApplicationInfo applicationInfo : persistedRecents) {
-							if (applicationInfo.getIntent().getComponent().getPackageName().equals(packageName)) {
-								try {
-									RecentAppsTable.deleteRecentApp(context, applicationInfo.getId());
-									break;
-								} catch (Exception e) {
-									Log.d(LOG_TAG, "onReceive", e);
-								}
-							}
-						}
+				if (intent.getAction().equals(Intent.ACTION_PACKAGE_REMOVED)) {
+					if (replacing) {
+						// the package will be reloaded when it is added again
+						return;
 					}
+					// Remove app from rows; the recents are removed when they
+					// are matched with the reloaded apps
+					launcherModel.deletePackageItems(packageName);
 				}
-				loadApplications();
-				loadRecents();
+				applicationsLoader.startLoadingPackage(packageName);
 			}
 		}
 	}
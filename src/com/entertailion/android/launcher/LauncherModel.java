@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.entertailion.android.launcher.apps.ApplicationInfo;
+import com.entertailion.android.launcher.apps.VirtualAppInfo;
+import com.entertailion.android.launcher.database.DatabaseHelper;
+import com.entertailion.android.launcher.database.ItemsTable;
+import com.entertailion.android.launcher.database.RowsTable;
+import com.entertailion.android.launcher.item.ItemInfo;
+import com.entertailion.android.launcher.row.RowInfo;
+import com.entertailion.android.launcher.shortcut.ShortcutInfo;
+import com.entertailion.android.launcher.spotlight.SpotlightInfo;
+
+/**
+ * In-memory model of the rows and their items. The model is loaded from the
+ * database once and is the authoritative copy of the data for the user
+ * interface. Changes are applied to the model immediately and written through
+ * to the database in the background by a single writer thread, so the writes
+ * are applied in the order they were made.
+ * 
+ * Ids for new rows and items are assigned by the model so that callers do not
+ * have to wait for the database insert.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class LauncherModel {
+	private static final String LOG_TAG = "LauncherModel";
+
+	private Context context;
+	private ArrayList<RowInfo> rows;
+	private int lastRowId;
+	private int lastItemId;
+	// index of the app items by package name
+	private final HashMap<String, ArrayList<ItemInfo>> packageItems = new HashMap<String, ArrayList<ItemInfo>>();
+	private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Order the items of a row by position
+	 */
+	private static final Comparator<ItemInfo> POSITION_COMPARATOR = new Comparator<ItemInfo>() {
+		@Override
+		public int compare(ItemInfo object1, ItemInfo object2) {
+			return object1.getPosition() - object2.getPosition();
+		}
+	};
+
+	/**
+	 * @param context
+	 */
+	public LauncherModel(Context context) {
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Get the shared model owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static LauncherModel getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getLauncherModel();
+	}
+
+	/**
+	 * Load the model from the database the first time it is used.
+	 */
+	private void ensureLoaded() {
+		if (rows == null) {
+			rows = RowsTable.getRowsWithItems(context);
+			if (rows == null) {
+				rows = new ArrayList<RowInfo>();
+			}
+			for (RowInfo row : rows) {
+				if (row.getItems() == null) {
+					row.setItems(new ArrayList<ItemInfo>());
+				}
+				for (ItemInfo itemInfo : row.getItems()) {
+					indexItem(itemInfo);
+				}
+			}
+			lastRowId = RowsTable.getMaxId(context);
+			lastItemId = ItemsTable.getMaxId(context);
+		}
+	}
+
+	/**
+	 * Get the rows ordered by position. The rows are copies; use the update
+	 * methods to change them.
+	 * 
+	 * @return the rows or null if there are no rows
+	 */
+	public synchronized ArrayList<RowInfo> getRows() {
+		ensureLoaded();
+		if (rows.size() == 0) {
+			return null;
+		}
+		ArrayList<RowInfo> copy = new ArrayList<RowInfo>(rows.size());
+		for (RowInfo row : rows) {
+			copy.add(new RowInfo(row.getId(), row.getTitle(), row.getPosition(), row.getType()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Get the rows ordered by position together with their items. Rows
+	 * without items have a null item list.
+	 * 
+	 * @return the rows or null if there are no rows
+	 */
+	public synchronized ArrayList<RowInfo> getRowsWithItems() {
+		ensureLoaded();
+		if (rows.size() == 0) {
+			return null;
+		}
+		ArrayList<RowInfo> copy = new ArrayList<RowInfo>(rows.size());
+		for (RowInfo row : rows) {
+			RowInfo rowCopy = new RowInfo(row.getId(), row.getTitle(), row.getPosition(), row.getType());
+			rowCopy.setVersion(row.getVersion());
+			if (row.getItems().size() > 0) {
+				rowCopy.setItems(new ArrayList<ItemInfo>(row.getItems()));
+			}
+			copy.add(rowCopy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Get the items of a row ordered by position.
+	 * 
+	 * @param rowId
+	 * @return the items or null if the row has no items
+	 */
+	public synchronized ArrayList<ItemInfo> getItems(int rowId) {
+		ensureLoaded();
+		RowInfo row = findRow(rowId);
+		if (row == null || row.getItems().size() == 0) {
+			return null;
+		}
+		return new ArrayList<ItemInfo>(row.getItems());
+	}
+
+	/**
+	 * Check if any item uses an icon file. The model includes the changes
+	 * not written to the database yet.
+	 * 
+	 * @param icon
+	 * @return
+	 */
+	public synchronized boolean isIconUsed(String icon) {
+		ensureLoaded();
+		for (RowInfo row : rows) {
+			for (ItemInfo itemInfo : row.getItems()) {
+				String itemIcon = null;
+				if (itemInfo instanceof ShortcutInfo) {
+					itemIcon = ((ShortcutInfo) itemInfo).getIcon();
+				} else if (itemInfo instanceof SpotlightInfo) {
+					itemIcon = ((SpotlightInfo) itemInfo).getIcon();
+				}
+				if (icon.equals(itemIcon)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the number of items in a row.
+	 * 
+	 * @param rowId
+	 * @return
+	 */
+	public synchronized int getItemCount(int rowId) {
+		ensureLoaded();
+		RowInfo row = findRow(rowId);
+		return row == null ? 0 : row.getItems().size();
+	}
+
+	/**
+	 * Add a new row.
+	 * 
+	 * @param title
+	 * @param position
+	 * @param type
+	 * @return the id of the new row
+	 */
+	public synchronized int insertRow(final String title, final int position, final int type) {
+		ensureLoaded();
+		final int id = ++lastRowId;
+		RowInfo row = new RowInfo(id, title, position, type);
+		row.setItems(new ArrayList<ItemInfo>());
+		rows.add(row);
+		Collections.sort(rows);
+		write(new Runnable() {
+			public void run() {
+				try {
+					RowsTable.insertRow(context, id, title, position, type);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "insertRow", e);
+				}
+			}
+		});
+		return id;
+	}
+
+	/**
+	 * Update a row.
+	 * 
+	 * @param id
+	 * @param title
+	 * @param position
+	 * @param type
+	 */
+	public synchronized void updateRow(final int id, final String title, final int position, final int type) {
+		ensureLoaded();
+		RowInfo row = findRow(id);
+		if (row != null) {
+			row.setTitle(title);
+			row.setPosition(position);
+			row.setType(type);
+			Collections.sort(rows);
+		}
+		write(new Runnable() {
+			public void run() {
+				try {
+					RowsTable.updateRow(context, id, title, position, type);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "updateRow", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Delete a row and its items.
+	 * 
+	 * @param id
+	 */
+	public synchronized void deleteRow(final int id) {
+		ensureLoaded();
+		RowInfo row = findRow(id);
+		if (row != null) {
+			rows.remove(row);
+			for (final ItemInfo itemInfo : row.getItems()) {
+				unindexItem(itemInfo);
+				write(new Runnable() {
+					public void run() {
+						try {
+							ItemsTable.deleteItem(context, itemInfo.getId());
+						} catch (Exception e) {
+							Log.e(LOG_TAG, "deleteRow", e);
+						}
+					}
+				});
+			}
+		}
+		write(new Runnable() {
+			public void run() {
+				try {
+					RowsTable.deleteRow(context, id);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "deleteRow", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Add a new item to a row.
+	 * 
+	 * @param rowId
+	 * @param position
+	 * @param title
+	 * @param intent
+	 * @param icon
+	 * @param itemType
+	 * @return the id of the new item
+	 */
+	public synchronized int insertItem(final int rowId, final int position, final String title, Intent intent, final String icon, final int itemType) {
+		ensureLoaded();
+		final int id = ++lastItemId;
+		// the intent could be shared with other data structures
+		final Intent itemIntent = intent == null ? null : new Intent(intent);
+		RowInfo row = findRow(rowId);
+		if (row != null) {
+			ItemInfo itemInfo = ItemsTable.createItem(id, position, title, itemIntent, icon, itemType);
+			row.getItems().add(itemInfo);
+			Collections.sort(row.getItems(), POSITION_COMPARATOR);
+			row.setVersion(row.getVersion() + 1);
+			indexItem(itemInfo);
+		} else {
+			Log.w(LOG_TAG, "insertItem: unknown row " + rowId);
+		}
+		write(new Runnable() {
+			public void run() {
+				try {
+					ItemsTable.insertItem(context, id, rowId, position, title, itemIntent, icon, itemType);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "insertItem", e);
+				}
+			}
+		});
+		return id;
+	}
+
+	/**
+	 * Update an item. The item can be moved to another row.
+	 * 
+	 * @param id
+	 * @param rowId
+	 * @param position
+	 * @param title
+	 * @param intent
+	 *            the new intent or null to keep the current intent
+	 * @param icon
+	 * @param itemType
+	 */
+	public synchronized void updateItem(final int id, final int rowId, final int position, final String title, final Intent intent, final String icon,
+			final int itemType) {
+		ensureLoaded();
+		ItemInfo itemInfo = removeItem(id);
+		if (itemInfo != null) {
+			unindexItem(itemInfo);
+			if (getItemType(itemInfo) != itemType) {
+				itemInfo = ItemsTable.createItem(id, position, title, intent != null ? intent : itemInfo.getIntent(), icon, itemType);
+			} else {
+				itemInfo.setPosition(position);
+				itemInfo.setTitle(title);
+				if (intent != null) {
+					itemInfo.setIntent(intent);
+				}
+				if (itemInfo instanceof ShortcutInfo) {
+					((ShortcutInfo) itemInfo).setIcon(icon);
+				} else if (itemInfo instanceof SpotlightInfo) {
+					((SpotlightInfo) itemInfo).setIcon(icon);
+				}
+			}
+			RowInfo row = findRow(rowId);
+			if (row != null) {
+				row.getItems().add(itemInfo);
+				Collections.sort(row.getItems(), POSITION_COMPARATOR);
+				// the items are updated in place
+				row.setVersion(row.getVersion() + 1);
+				indexItem(itemInfo);
+			}
+		}
+		write(new Runnable() {
+			public void run() {
+				try {
+					ItemsTable.updateItem(context, id, rowId, position, title, intent, icon, itemType);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "updateItem", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Delete an item.
+	 * 
+	 * @param id
+	 */
+	public synchronized void deleteItem(final int id) {
+		ensureLoaded();
+		ItemInfo itemInfo = removeItem(id);
+		if (itemInfo != null) {
+			unindexItem(itemInfo);
+		}
+		write(new Runnable() {
+			public void run() {
+				try {
+					ItemsTable.deleteItem(context, id);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "deleteItem", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the app items that launch activities of a package.
+	 * 
+	 * @param packageName
+	 * @return the items or null if no items use the package
+	 */
+	public synchronized ArrayList<ItemInfo> getPackageItems(String packageName) {
+		ensureLoaded();
+		ArrayList<ItemInfo> items = packageItems.get(packageName);
+		if (items == null || items.size() == 0) {
+			return null;
+		}
+		return new ArrayList<ItemInfo>(items);
+	}
+
+	/**
+	 * Delete the app items of a package that was uninstalled. Rows that
+	 * become empty are deleted too, but the last row is always kept.
+	 * 
+	 * @param packageName
+	 * @return true if any items were deleted
+	 */
+	public synchronized boolean deletePackageItems(String packageName) {
+		ArrayList<ItemInfo> items = getPackageItems(packageName);
+		if (items == null) {
+			return false;
+		}
+		boolean deleted = false;
+		for (ItemInfo itemInfo : items) {
+			if (itemInfo instanceof ApplicationInfo) {
+				RowInfo row = findItemRow(itemInfo.getId());
+				if (row != null) {
+					if (row.getItems().size() == 1) {
+						if (rows.size() > 1) {
+							deleteItem(itemInfo.getId());
+							deleteRow(row.getId());
+							deleted = true;
+						}
+					} else {
+						deleteItem(itemInfo.getId());
+						deleted = true;
+					}
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Add an item to the package index.
+	 * 
+	 * @param itemInfo
+	 */
+	private void indexItem(ItemInfo itemInfo) {
+		String packageName = getPackageName(itemInfo);
+		if (packageName != null) {
+			ArrayList<ItemInfo> items = packageItems.get(packageName);
+			if (items == null) {
+				items = new ArrayList<ItemInfo>();
+				packageItems.put(packageName, items);
+			}
+			items.add(itemInfo);
+		}
+	}
+
+	/**
+	 * Remove an item from the package index. The item is matched by identity
+	 * since the same app can be in several rows.
+	 * 
+	 * @param itemInfo
+	 */
+	private void unindexItem(ItemInfo itemInfo) {
+		String packageName = getPackageName(itemInfo);
+		if (packageName != null) {
+			ArrayList<ItemInfo> items = packageItems.get(packageName);
+			if (items != null) {
+				for (int i = 0; i < items.size(); i++) {
+					if (items.get(i) == itemInfo) {
+						items.remove(i);
+						break;
+					}
+				}
+				if (items.size() == 0) {
+					packageItems.remove(packageName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the package of the activity an item launches.
+	 * 
+	 * @param itemInfo
+	 * @return the package name or null if the item does not launch a
+	 *         component
+	 */
+	private static String getPackageName(ItemInfo itemInfo) {
+		if (itemInfo.getIntent() != null && itemInfo.getIntent().getComponent() != null) {
+			return itemInfo.getIntent().getComponent().getPackageName();
+		}
+		return null;
+	}
+
+	/**
+	 * Find the row that holds an item.
+	 * 
+	 * @param id
+	 * @return
+	 */
+	private RowInfo findItemRow(int id) {
+		for (RowInfo row : rows) {
+			for (ItemInfo itemInfo : row.getItems()) {
+				if (itemInfo.getId() == id) {
+					return row;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find a row by id.
+	 * 
+	 * @param id
+	 * @return
+	 */
+	private RowInfo findRow(int id) {
+		for (RowInfo row : rows) {
+			if (row.getId() == id) {
+				return row;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove an item from its row.
+	 * 
+	 * @param id
+	 * @return the removed item or null if not found
+	 */
+	private ItemInfo removeItem(int id) {
+		for (RowInfo row : rows) {
+			ArrayList<ItemInfo> items = row.getItems();
+			for (int i = 0; i < items.size(); i++) {
+				if (items.get(i).getId() == id) {
+					row.setVersion(row.getVersion() + 1);
+					return items.remove(i);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the persisted type of an item.
+	 * 
+	 * @param itemInfo
+	 * @return
+	 */
+	private static int getItemType(ItemInfo itemInfo) {
+		if (itemInfo instanceof VirtualAppInfo) {
+			return ((VirtualAppInfo) itemInfo).getType();
+		} else if (itemInfo instanceof SpotlightInfo) {
+			return DatabaseHelper.SPOTLIGHT_TYPE;
+		} else if (itemInfo instanceof ShortcutInfo) {
+			return DatabaseHelper.SHORTCUT_TYPE;
+		}
+		return DatabaseHelper.APP_TYPE;
+	}
+
+	/**
+	 * Queue a database write on the writer thread.
+	 * 
+	 * @param runnable
+	 */
+	private void write(Runnable runnable) {
+		writer.execute(runnable);
+	}
+
+}
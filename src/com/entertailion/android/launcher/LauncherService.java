@@ -16,7 +16,6 @@
 package com.entertailion.android.launcher;
 
 import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
@@ -24,8 +23,7 @@ import android.os.IBinder;
 import android.util.Log;
 
 import com.entertailion.android.launcher.spotlight.SpotlightReceiver;
-import com.entertailion.android.launcher.utils.Utils;
-import com.entertailion.android.launcher.weather.WeatherReceiver;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
 
 /**
  * Launcher service to do background tasks
@@ -55,17 +53,14 @@ public class LauncherService extends Service {
 
 		// get spotlight data
 		Log.d(LOG_TAG, "starting alarms...");
-		AlarmManager am = (AlarmManager) getSystemService(ALARM_SERVICE);
-		PendingIntent spotlightIntent = PendingIntent.getBroadcast(this, 0, new Intent(this, SpotlightReceiver.class), 0);
+		// inexact alarms that do not wake up the device so that the updates
+		// are batched together
+		BackgroundScheduler scheduler = BackgroundScheduler.getInstance(this);
 		// start immediately, then twice daily
-		am.setRepeating(AlarmManager.RTC_WAKEUP, 0, AlarmManager.INTERVAL_HALF_DAY, spotlightIntent);
+		scheduler.scheduleRepeating(SpotlightReceiver.class, AlarmManager.INTERVAL_HALF_DAY);
 
-		// free weather data only supported for USA
-		if (Utils.isUsa()) {
-			PendingIntent weatherIntent = PendingIntent.getBroadcast(this, 0, new Intent(this, WeatherReceiver.class), 0);
-			// start immediately, then half hour
-			am.setRepeating(AlarmManager.RTC_WAKEUP, 0, AlarmManager.INTERVAL_HALF_HOUR, weatherIntent);
-		}
+		// the weather updates are scheduled by the WeatherUpdater while the
+		// launcher is visible
 	}
 
 	@Override
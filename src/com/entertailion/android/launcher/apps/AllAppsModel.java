@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.apps;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.R;
+import com.entertailion.android.launcher.database.DatabaseHelper;
+import com.entertailion.android.launcher.item.ItemInfo;
+
+/**
+ * Alphabetical list of the installed apps and the virtual apps displayed by
+ * the all apps and add apps dialogs. The titles are compared with collation
+ * keys computed once per app; the list is sorted when the apps are loaded
+ * and then patched for each changed package. The dialogs share snapshots of
+ * the list which are replaced, never modified, when the apps change.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class AllAppsModel {
+	private static final String LOG_TAG = "AllAppsModel";
+
+	/**
+	 * Item with the collation key of its title.
+	 */
+	private static class Entry {
+		private final CollationKey key;
+		private final ItemInfo item;
+
+		Entry(CollationKey key, ItemInfo item) {
+			this.key = key;
+			this.item = item;
+		}
+	}
+
+	private static final Comparator<Entry> KEY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry entry1, Entry entry2) {
+			return entry1.key.compareTo(entry2.key);
+		}
+	};
+
+	private Context context;
+	private Locale locale;
+	private Collator collator;
+	private List<ApplicationInfo> applications = new ArrayList<ApplicationInfo>();
+	// all the items in alphabetical order
+	private ArrayList<Entry> entries;
+	private ArrayList<VirtualAppInfo> virtualApps;
+	private VirtualAppInfo allAppsItem;
+	// snapshots shared by the dialogs
+	private ArrayList<ItemInfo> allApps;
+	private ArrayList<ItemInfo> addApps;
+
+	/**
+	 * @param context
+	 */
+	public AllAppsModel(Context context) {
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Get the shared all apps model owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static AllAppsModel getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getAllAppsModel();
+	}
+
+	/**
+	 * Get the items of the all apps dialog.
+	 * 
+	 * @return the items in alphabetical order; the list must not be modified
+	 */
+	public synchronized ArrayList<ItemInfo> getAllApps() {
+		load();
+		return allApps;
+	}
+
+	/**
+	 * Get the items of the add apps dialog, which include the all apps virtual
+	 * app.
+	 * 
+	 * @return the items in alphabetical order; the list must not be modified
+	 */
+	public synchronized ArrayList<ItemInfo> getAddApps() {
+		load();
+		return addApps;
+	}
+
+	/**
+	 * Replace all the installed apps.
+	 * 
+	 * @param applications
+	 */
+	public synchronized void setApplications(List<ApplicationInfo> applications) {
+		this.applications = new ArrayList<ApplicationInfo>(applications);
+		entries = null;
+		load();
+	}
+
+	/**
+	 * Replace the apps of a package. The other apps keep their collation keys.
+	 * 
+	 * @param packageName
+	 * @param packageApplications
+	 *            the apps of the package, empty if it was removed
+	 */
+	public synchronized void onPackageLoaded(String packageName, List<ApplicationInfo> packageApplications) {
+		ArrayList<ApplicationInfo> patched = new ArrayList<ApplicationInfo>(applications.size() + packageApplications.size());
+		for (ApplicationInfo application : applications) {
+			if (!packageName.equals(application.getIntent().getComponent().getPackageName())) {
+				patched.add(application);
+			}
+		}
+		patched.addAll(packageApplications);
+		applications = patched;
+		if (entries == null || !Locale.getDefault().equals(locale)) {
+			load();
+			return;
+		}
+
+		Iterator<Entry> iterator = entries.iterator();
+		while (iterator.hasNext()) {
+			ItemInfo item = iterator.next().item;
+			if (item instanceof ApplicationInfo && packageName.equals(item.getIntent().getComponent().getPackageName())) {
+				iterator.remove();
+			}
+		}
+		for (ApplicationInfo application : packageApplications) {
+			Entry entry = createEntry(application);
+			int index = Collections.binarySearch(entries, entry, KEY_COMPARATOR);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			entries.add(index, entry);
+		}
+		publish();
+	}
+
+	/**
+	 * Sort all the items the first time, after the apps were reloaded or when
+	 * the language changed.
+	 */
+	private void load() {
+		if (!Locale.getDefault().equals(locale)) {
+			locale = Locale.getDefault();
+			collator = Collator.getInstance(locale);
+			// the titles of the virtual apps are localized
+			virtualApps = new ArrayList<VirtualAppInfo>();
+			allAppsItem = createVirtualApp(DatabaseHelper.VIRTUAL_ALL_APPS_TYPE, R.string.all_apps, R.drawable.all_apps);
+			virtualApps.add(allAppsItem);
+			virtualApps.add(createVirtualApp(DatabaseHelper.VIRTUAL_NOTIFICATIONS_TYPE, R.string.notifications, R.drawable.notifications));
+			virtualApps.add(createVirtualApp(DatabaseHelper.VIRTUAL_BROWSER_BOOKMARKS_TYPE, R.string.bookmarks, R.drawable.bookmarks));
+			virtualApps.add(createVirtualApp(DatabaseHelper.VIRTUAL_BROWSER_HISTORY_TYPE, R.string.browser_history, R.drawable.browser_history));
+			virtualApps.add(createVirtualApp(DatabaseHelper.VIRTUAL_SPOTLIGHT_WEB_APPS_TYPE, R.string.spotlight_web_apps, R.drawable.spotlight));
+			virtualApps.add(createVirtualApp(DatabaseHelper.VIRTUAL_LIVE_TV_TYPE, R.string.live_tv, R.drawable.livetv));
+			entries = null;
+		}
+		if (entries != null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		entries = new ArrayList<Entry>(applications.size() + virtualApps.size());
+		for (ApplicationInfo application : applications) {
+			entries.add(createEntry(application));
+		}
+		for (VirtualAppInfo virtualApp : virtualApps) {
+			entries.add(createEntry(virtualApp));
+		}
+		Collections.sort(entries, KEY_COMPARATOR);
+		publish();
+		Log.d(LOG_TAG, "load: " + entries.size() + " items in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	private Entry createEntry(ItemInfo item) {
+		String title = item.getTitle();
+		return new Entry(collator.getCollationKey(title == null ? "" : title), item);
+	}
+
+	private VirtualAppInfo createVirtualApp(int type, int title, int drawable) {
+		VirtualAppInfo virtualApp = new VirtualAppInfo();
+		virtualApp.setType(type);
+		virtualApp.setTitle(context.getString(title));
+		virtualApp.setDrawable(context.getResources().getDrawable(drawable));
+		return virtualApp;
+	}
+
+	/**
+	 * Replace the snapshots used by the dialogs.
+	 */
+	private void publish() {
+		ArrayList<ItemInfo> all = new ArrayList<ItemInfo>(entries.size());
+		ArrayList<ItemInfo> add = new ArrayList<ItemInfo>(entries.size());
+		for (Entry entry : entries) {
+			add.add(entry.item);
+			if (entry.item != allAppsItem) {
+				all.add(entry.item);
+			}
+		}
+		allApps = all;
+		addApps = add;
+	}
+
+}
@@ -23,7 +23,7 @@ import android.widget.ImageView;
 import com.entertailion.android.launcher.Launcher;
 import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.utils.Analytics;
-import com.entertailion.android.launcher.utils.Utils;
+import com.entertailion.android.launcher.utils.ThumbnailCache;
 
 /**
  * Data structure for apps.
@@ -67,8 +67,8 @@ public class ApplicationInfo extends ItemInfo {
 
 		Drawable icon = getDrawable();
 		if (icon != null) {
-			if (filtered) {
-				icon = Utils.createIconThumbnail(icon, imageView.getContext());
+			if (!filtered) {
+				icon = ThumbnailCache.getInstance(imageView.getContext()).getIconThumbnail(icon);
 				setDrawable(icon);
 				filtered = true;
 			}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.apps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.entertailion.android.launcher.item.ItemInfo;
+import com.entertailion.android.launcher.utils.ThumbnailCache;
+
+/**
+ * Load the list of launchable Android apps on a background worker thread. The
+ * apps are delivered on the UI thread in two phases: first the sorted list of
+ * apps with their titles so that the rows can be bound immediately, then the
+ * icons in batches as they are loaded.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class ApplicationsLoader {
+	private static final String LOG_TAG = "ApplicationsLoader";
+
+	private static final int ICON_BATCH_SIZE = 16;
+
+	/**
+	 * Callbacks for the loader results. Always invoked on the UI thread.
+	 */
+	public interface Callbacks {
+		/**
+		 * The sorted list of apps is available. The apps don't have their
+		 * icons yet.
+		 * 
+		 * @param applications
+		 */
+		public void onApplicationsLoaded(ArrayList<ApplicationInfo> applications);
+
+		/**
+		 * The icon thumbnails for a batch of apps have been set.
+		 * 
+		 * @param applications
+		 *            the apps that received their icons
+		 */
+		public void onApplicationIconsLoaded(ArrayList<ApplicationInfo> applications);
+
+		/**
+		 * The apps of a package that was added, changed or removed have been
+		 * reloaded. The apps have their icon thumbnails.
+		 * 
+		 * @param packageName
+		 * @param applications
+		 *            the current apps of the package; empty if the package
+		 *            was removed
+		 */
+		public void onPackageLoaded(String packageName, ArrayList<ApplicationInfo> applications);
+	}
+
+	private Context context;
+	private Callbacks callbacks;
+	private Handler workerHandler;
+	private Handler mainHandler;
+	// incremented for every load to drop the results of stale loads
+	private volatile int generation;
+	private IconDiskCache iconCache;
+
+	/**
+	 * @param context
+	 * @param callbacks
+	 */
+	public ApplicationsLoader(Context context, Callbacks callbacks) {
+		this.context = context.getApplicationContext();
+		this.callbacks = callbacks;
+		iconCache = new IconDiskCache(this.context);
+		HandlerThread workerThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+		workerThread.start();
+		workerHandler = new Handler(workerThread.getLooper());
+		mainHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * Start loading the apps. Any load in progress is abandoned.
+	 */
+	public void startLoading() {
+		final int loadGeneration = ++generation;
+		workerHandler.post(new Runnable() {
+			public void run() {
+				load(loadGeneration);
+			}
+		});
+	}
+
+	/**
+	 * Reload only the apps of a single package.
+	 * 
+	 * @param packageName
+	 */
+	public void startLoadingPackage(final String packageName) {
+		final int loadGeneration = generation;
+		workerHandler.post(new Runnable() {
+			public void run() {
+				loadPackage(packageName, loadGeneration);
+			}
+		});
+	}
+
+	/**
+	 * Load the apps of a package on the worker thread.
+	 * 
+	 * @param packageName
+	 * @param loadGeneration
+	 */
+	private void loadPackage(final String packageName, final int loadGeneration) {
+		if (loadGeneration != generation) {
+			// a full load is in progress
+			return;
+		}
+		PackageManager manager = context.getPackageManager();
+
+		Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+		mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+		mainIntent.setPackage(packageName);
+
+		final ArrayList<ApplicationInfo> applications = new ArrayList<ApplicationInfo>();
+		final ArrayList<Drawable> icons = new ArrayList<Drawable>();
+		HashMap<String, Long> lastUpdateTimes = new HashMap<String, Long>();
+		HashSet<String> fileNames = new HashSet<String>();
+		List<ResolveInfo> apps = manager.queryIntentActivities(mainIntent, 0);
+		if (apps != null) {
+			for (ResolveInfo info : apps) {
+				applications.add(createApplication(manager, info));
+				icons.add(loadIcon(manager, info, lastUpdateTimes, fileNames));
+			}
+		}
+		// remove the icons of the previous version of the package
+		iconCache.prune(IconDiskCache.getPrefix(packageName), fileNames);
+		Log.d(LOG_TAG, "loaded " + applications.size() + " apps for " + packageName);
+
+		mainHandler.post(new Runnable() {
+			public void run() {
+				if (loadGeneration == generation) {
+					for (int i = 0; i < icons.size(); i++) {
+						applications.get(i).setDrawable(icons.get(i));
+						applications.get(i).setFiltered(true);
+					}
+					callbacks.onPackageLoaded(packageName, applications);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Load the apps on the worker thread.
+	 * 
+	 * @param loadGeneration
+	 */
+	private void load(final int loadGeneration) {
+		if (loadGeneration != generation) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		PackageManager manager = context.getPackageManager();
+
+		Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+		mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+
+		final List<ResolveInfo> apps = manager.queryIntentActivities(mainIntent, 0);
+		if (apps == null) {
+			return;
+		}
+
+		final ArrayList<ApplicationInfo> applications = new ArrayList<ApplicationInfo>(apps.size());
+		final Map<ApplicationInfo, ResolveInfo> resolveInfos = new IdentityHashMap<ApplicationInfo, ResolveInfo>(apps.size());
+		for (ResolveInfo info : apps) {
+			// load each label only once
+			ApplicationInfo application = createApplication(manager, info);
+			applications.add(application);
+			resolveInfos.put(application, info);
+		}
+		Collections.sort(applications, ItemInfo.ALPHA_COMPARATOR);
+		Log.d(LOG_TAG, "loaded " + applications.size() + " apps in " + (System.currentTimeMillis() - start) + "ms");
+
+		mainHandler.post(new Runnable() {
+			public void run() {
+				if (loadGeneration == generation) {
+					callbacks.onApplicationsLoaded(applications);
+				}
+			}
+		});
+
+		// load the icons in batches
+		HashMap<String, Long> lastUpdateTimes = new HashMap<String, Long>();
+		HashSet<String> fileNames = new HashSet<String>();
+		int count = applications.size();
+		for (int i = 0; i < count; i += ICON_BATCH_SIZE) {
+			if (loadGeneration != generation) {
+				return;
+			}
+			int end = Math.min(i + ICON_BATCH_SIZE, count);
+			final ArrayList<ApplicationInfo> batch = new ArrayList<ApplicationInfo>(applications.subList(i, end));
+			final Drawable[] icons = new Drawable[batch.size()];
+			for (int j = 0; j < icons.length; j++) {
+				icons[j] = loadIcon(manager, resolveInfos.get(batch.get(j)), lastUpdateTimes, fileNames);
+			}
+			mainHandler.post(new Runnable() {
+				public void run() {
+					if (loadGeneration == generation) {
+						// only touch the app data on the UI thread
+						for (int j = 0; j < icons.length; j++) {
+							batch.get(j).setDrawable(icons[j]);
+							batch.get(j).setFiltered(true);
+						}
+						callbacks.onApplicationIconsLoaded(batch);
+					}
+				}
+			});
+		}
+		// remove the icons of apps that were uninstalled or updated
+		iconCache.prune("", fileNames);
+		Log.d(LOG_TAG, "loaded icons in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * Get the icon thumbnail for an activity. The thumbnail is read from the
+	 * disk cache; otherwise the icon is loaded with the package manager,
+	 * scaled and stored in the cache.
+	 * 
+	 * @param manager
+	 * @param info
+	 * @param lastUpdateTimes
+	 *            last update times already looked up by package name
+	 * @param fileNames
+	 *            collects the cache file names of the icons
+	 * @return the thumbnail or null if the icon could not be loaded
+	 */
+	private Drawable loadIcon(PackageManager manager, ResolveInfo info, HashMap<String, Long> lastUpdateTimes, HashSet<String> fileNames) {
+		ComponentName component = new ComponentName(info.activityInfo.applicationInfo.packageName, info.activityInfo.name);
+		Long lastUpdateTime = lastUpdateTimes.get(component.getPackageName());
+		if (lastUpdateTime == null) {
+			try {
+				lastUpdateTime = manager.getPackageInfo(component.getPackageName(), 0).lastUpdateTime;
+			} catch (Exception e) {
+				Log.e(LOG_TAG, "getPackageInfo", e);
+				lastUpdateTime = 0L;
+			}
+			lastUpdateTimes.put(component.getPackageName(), lastUpdateTime);
+		}
+		fileNames.add(IconDiskCache.getFileName(component, lastUpdateTime));
+
+		Drawable icon = iconCache.getIcon(component, lastUpdateTime);
+		if (icon == null) {
+			try {
+				icon = ThumbnailCache.getInstance(context).getIconThumbnail(info.activityInfo.loadIcon(manager));
+				iconCache.putIcon(component, lastUpdateTime, icon);
+			} catch (Exception e) {
+				Log.e(LOG_TAG, "loadIcon", e);
+			}
+		}
+		return icon;
+	}
+
+	/**
+	 * Create the app data structure for a launchable activity.
+	 * 
+	 * @param manager
+	 * @param info
+	 * @return
+	 */
+	private static ApplicationInfo createApplication(PackageManager manager, ResolveInfo info) {
+		ApplicationInfo application = new ApplicationInfo();
+		application.setTitle(info.loadLabel(manager).toString());
+		Intent intent = new Intent(Intent.ACTION_MAIN);
+		intent.addCategory(Intent.CATEGORY_LAUNCHER);
+		intent.setComponent(new ComponentName(info.activityInfo.applicationInfo.packageName, info.activityInfo.name));
+		intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+		application.setIntent(intent);
+		return application;
+	}
+
+}
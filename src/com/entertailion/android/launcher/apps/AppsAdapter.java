@@ -21,7 +21,7 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
 
-import com.entertailion.android.launcher.utils.Utils;
+import com.entertailion.android.launcher.utils.ThumbnailCache;
 import com.entertailion.android.launcher.widget.GalleryAdapter;
 
 /**
@@ -41,8 +41,13 @@ public class AppsAdapter extends GalleryAdapter<ApplicationInfo> {
 		ApplicationInfo info = getItem(position);
 
 		Drawable icon = info.getDrawable();
+		if (icon == null) {
+			// the icon is still being loaded in the background
+			super.updateView(imageView, position);
+			return;
+		}
 		if (!info.getFiltered()) {
-			icon = Utils.createIconThumbnail(icon, getContext());
+			icon = ThumbnailCache.getInstance(getContext()).getIconThumbnail(icon);
 			info.setDrawable(icon);
 			info.setFiltered(true);
 		}
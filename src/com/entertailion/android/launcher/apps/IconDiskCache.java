@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.apps;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Set;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import com.entertailion.android.launcher.utils.FastBitmapDrawable;
+import com.entertailion.android.launcher.utils.Utils;
+
+/**
+ * Persistent cache of the app icon thumbnails. Loading and scaling the icons
+ * with the package manager is slow on the Google TV devices, so the
+ * thumbnails are stored as PNG files keyed by the component name and the time
+ * the package was last updated. An updated package gets a new key, so stale
+ * icons are never used.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class IconDiskCache {
+	private static final String LOG_TAG = "IconDiskCache";
+
+	private static final String ICONS_DIRECTORY = "icons";
+	private static final String ICON_EXTENSION = ".png";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private File directory;
+
+	/**
+	 * @param context
+	 */
+	public IconDiskCache(Context context) {
+		directory = new File(context.getCacheDir(), ICONS_DIRECTORY);
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	 * Get the file name for an icon.
+	 * 
+	 * @param component
+	 * @param lastUpdateTime
+	 *            the time the package was last updated
+	 * @return
+	 */
+	public static String getFileName(ComponentName component, long lastUpdateTime) {
+		return getPrefix(component.getPackageName()) + component.getClassName() + "@" + lastUpdateTime + ICON_EXTENSION;
+	}
+
+	/**
+	 * Get the file name prefix for the icons of a package.
+	 * 
+	 * @param packageName
+	 * @return
+	 */
+	public static String getPrefix(String packageName) {
+		return packageName + "+";
+	}
+
+	/**
+	 * Get a cached icon thumbnail.
+	 * 
+	 * @param component
+	 * @param lastUpdateTime
+	 * @return the thumbnail or null if the icon is not cached
+	 */
+	public Drawable getIcon(ComponentName component, long lastUpdateTime) {
+		File file = new File(directory, getFileName(component, lastUpdateTime));
+		if (file.exists()) {
+			try {
+				Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+				if (bitmap != null) {
+					return new FastBitmapDrawable(bitmap);
+				}
+			} catch (Throwable e) {
+				Log.e(LOG_TAG, "getIcon", e);
+			}
+			// corrupt file
+			file.delete();
+		}
+		return null;
+	}
+
+	/**
+	 * Store an icon thumbnail. The file is written to a temporary file first
+	 * so that a partial file is never read.
+	 * 
+	 * @param component
+	 * @param lastUpdateTime
+	 * @param icon
+	 */
+	public void putIcon(ComponentName component, long lastUpdateTime, Drawable icon) {
+		if (icon == null || icon.getIntrinsicWidth() <= 0 || icon.getIntrinsicHeight() <= 0) {
+			return;
+		}
+		File file = new File(directory, getFileName(component, lastUpdateTime));
+		File tempFile = new File(directory, file.getName() + TEMP_EXTENSION);
+		FileOutputStream fos = null;
+		try {
+			Bitmap bitmap;
+			if (icon instanceof FastBitmapDrawable) {
+				bitmap = ((FastBitmapDrawable) icon).getBitmap();
+			} else {
+				bitmap = Utils.drawableToBitmap(icon);
+			}
+			fos = new FileOutputStream(tempFile);
+			bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
+			fos.close();
+			fos = null;
+			if (!tempFile.renameTo(file)) {
+				tempFile.delete();
+			}
+		} catch (Throwable e) {
+			Log.e(LOG_TAG, "putIcon", e);
+			tempFile.delete();
+		} finally {
+			if (fos != null) {
+				try {
+					fos.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete the cached icons that are no longer used.
+	 * 
+	 * @param prefix
+	 *            only consider the files with this prefix; use an empty prefix
+	 *            for all the files
+	 * @param fileNames
+	 *            the file names of the icons to keep
+	 */
+	public void prune(String prefix, Set<String> fileNames) {
+		String[] files = directory.list();
+		if (files != null) {
+			for (String name : files) {
+				if (name.startsWith(prefix) && !fileNames.contains(name)) {
+					Log.d(LOG_TAG, "prune: " + name);
+					new File(directory, name).delete();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.apps;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.database.LaunchStatsTable;
+import com.entertailion.android.launcher.database.RecentAppsTable;
+
+/**
+ * Launch statistics of the apps used to rank the recent and suggested apps.
+ * Each app has a frecency score that decays exponentially with time and is
+ * incremented by each launch. The score is stored on a log scale relative to
+ * a fixed time, so that the scores of apps launched at different times can
+ * be compared without decaying all of them; a launch updates the score of a
+ * single app in constant time. The launches are also counted by time of day
+ * to suggest the apps used at the current time.
+ * 
+ * The statistics are loaded once and kept in memory ordered by score; the
+ * changes are written to the database by RecentApps.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class LaunchStats {
+	private static final String LOG_TAG = "LaunchStats";
+
+	// the score of a launch halves every 3 days
+	private static final double HALF_LIFE = 3 * 24 * 60 * 60 * 1000;
+	private static final double DECAY = Math.log(2) / HALF_LIFE;
+
+	// night, morning, afternoon and evening
+	public static final int TIME_BUCKETS = 4;
+	// weight of the launches at the same time of day for the suggestions
+	private static final double TIME_OF_DAY_WEIGHT = 2.0;
+	// number of apps considered for the suggestions per suggestion
+	private static final int CANDIDATES_FACTOR = 3;
+
+	/**
+	 * Launch statistics of an app.
+	 */
+	public static class Entry {
+		private final String component;
+		private Intent intent;
+		private int launchCount;
+		private long lastLaunch;
+		private double score;
+		private int[] timeBuckets = new int[TIME_BUCKETS];
+
+		/**
+		 * @param component
+		 *            class name of the app component
+		 * @param intent
+		 * @param launchCount
+		 * @param lastLaunch
+		 * @param score
+		 *            log scale score
+		 * @param timeBuckets
+		 *            launch counts by time of day
+		 */
+		public Entry(String component, Intent intent, int launchCount, long lastLaunch, double score, int[] timeBuckets) {
+			this.component = component;
+			this.intent = intent;
+			this.launchCount = launchCount;
+			this.lastLaunch = lastLaunch;
+			this.score = score;
+			if (timeBuckets != null && timeBuckets.length == TIME_BUCKETS) {
+				this.timeBuckets = timeBuckets;
+			}
+		}
+
+		public String getComponent() {
+			return component;
+		}
+
+		public Intent getIntent() {
+			return intent;
+		}
+
+		public int getLaunchCount() {
+			return launchCount;
+		}
+
+		public long getLastLaunch() {
+			return lastLaunch;
+		}
+
+		/**
+		 * Get the log scale score used for ordering the apps.
+		 * 
+		 * @return
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		public int[] getTimeBuckets() {
+			return timeBuckets.clone();
+		}
+
+		/**
+		 * Get the decayed number of launches at a given time.
+		 * 
+		 * @param time
+		 * @return
+		 */
+		public double getFrecency(long time) {
+			return Math.exp(score - DECAY * time);
+		}
+	}
+
+	// highest score first
+	private static final Comparator<Entry> SCORE_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry entry1, Entry entry2) {
+			int result = Double.compare(entry2.score, entry1.score);
+			if (result == 0) {
+				result = entry1.component.compareTo(entry2.component);
+			}
+			return result;
+		}
+	};
+
+	private Context context;
+	private HashMap<String, Entry> entries;
+	private TreeSet<Entry> ranking = new TreeSet<Entry>(SCORE_COMPARATOR);
+	// changes not written to the database yet
+	private HashSet<String> changed = new HashSet<String>();
+	private HashSet<String> removed = new HashSet<String>();
+
+	/**
+	 * @param context
+	 */
+	public LaunchStats(Context context) {
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Get the shared launch statistics owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static LaunchStats getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getLaunchStats();
+	}
+
+	private void load() {
+		if (entries == null) {
+			entries = new HashMap<String, Entry>();
+			List<Entry> persisted = LaunchStatsTable.getAllLaunchStats(context);
+			if (persisted != null) {
+				for (Entry entry : persisted) {
+					entries.put(entry.component, entry);
+					ranking.add(entry);
+				}
+			}
+			Log.d(LOG_TAG, "loaded " + entries.size() + " apps");
+		}
+	}
+
+	/**
+	 * Record the launch of an app.
+	 * 
+	 * @param intent
+	 * @param time
+	 */
+	public synchronized void onLaunched(Intent intent, long time) {
+		String key = RecentAppsTable.getKey(intent);
+		if (key == null) {
+			return;
+		}
+		load();
+		Entry entry = entries.get(key);
+		double launchScore = DECAY * time;
+		if (entry == null) {
+			entry = new Entry(key, intent, 1, time, launchScore, null);
+			entries.put(key, entry);
+		} else {
+			// the ranking is ordered by score
+			ranking.remove(entry);
+			entry.intent = intent;
+			entry.launchCount++;
+			entry.lastLaunch = time;
+			// log(exp(score) + exp(launchScore)) without overflow
+			double max = Math.max(entry.score, launchScore);
+			entry.score = max + Math.log1p(Math.exp(-Math.abs(entry.score - launchScore)));
+		}
+		entry.timeBuckets[getTimeBucket(time)]++;
+		ranking.add(entry);
+		changed.add(key);
+		removed.remove(key);
+	}
+
+	/**
+	 * Forget an app that no longer exists.
+	 * 
+	 * @param intent
+	 */
+	public synchronized void remove(Intent intent) {
+		String key = RecentAppsTable.getKey(intent);
+		if (key == null) {
+			return;
+		}
+		load();
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			ranking.remove(entry);
+			changed.remove(key);
+			removed.add(key);
+		}
+	}
+
+	/**
+	 * Order intents by score; the intents without statistics keep their
+	 * order after the others.
+	 * 
+	 * @param intents
+	 * @return the ordered intents, highest score first
+	 */
+	public synchronized List<Intent> rank(List<Intent> intents) {
+		load();
+		ArrayList<Intent> ranked = new ArrayList<Intent>(intents);
+		Collections.sort(ranked, new Comparator<Intent>() {
+			public int compare(Intent intent1, Intent intent2) {
+				Entry entry1 = entries.get(RecentAppsTable.getKey(intent1));
+				Entry entry2 = entries.get(RecentAppsTable.getKey(intent2));
+				if (entry1 == null || entry2 == null) {
+					return entry1 == entry2 ? 0 : (entry1 == null ? 1 : -1);
+				}
+				return SCORE_COMPARATOR.compare(entry1, entry2);
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * Get the apps suggested for the current time. The apps with the highest
+	 * scores are weighted by the share of their launches at the same time of
+	 * day.
+	 * 
+	 * @param max
+	 * @param time
+	 * @param excluded
+	 *            intents of the apps already displayed, e.g. the recent apps
+	 * @return the intents of the suggested apps, best first
+	 */
+	public synchronized List<Intent> getSuggestions(int max, long time, Collection<Intent> excluded) {
+		load();
+		HashSet<String> excludedKeys = new HashSet<String>();
+		for (Intent intent : excluded) {
+			excludedKeys.add(RecentAppsTable.getKey(intent));
+		}
+		final int bucket = getTimeBucket(time);
+		final HashMap<Entry, Double> weights = new HashMap<Entry, Double>();
+		ArrayList<Entry> candidates = new ArrayList<Entry>();
+		Iterator<Entry> iterator = ranking.iterator();
+		while (iterator.hasNext() && candidates.size() < max * CANDIDATES_FACTOR) {
+			Entry entry = iterator.next();
+			if (entry.intent == null || excludedKeys.contains(entry.component)) {
+				continue;
+			}
+			double share = (double) entry.timeBuckets[bucket] / Math.max(1, entry.launchCount);
+			weights.put(entry, entry.getFrecency(time) * (1 + TIME_OF_DAY_WEIGHT * share));
+			candidates.add(entry);
+		}
+		Collections.sort(candidates, new Comparator<Entry>() {
+			public int compare(Entry entry1, Entry entry2) {
+				return Double.compare(weights.get(entry2), weights.get(entry1));
+			}
+		});
+		ArrayList<Intent> suggestions = new ArrayList<Intent>();
+		for (int i = 0; i < candidates.size() && i < max; i++) {
+			suggestions.add(candidates.get(i).intent);
+		}
+		return suggestions;
+	}
+
+	/**
+	 * Write the changes since the last write to the database.
+	 */
+	public void write() {
+		ArrayList<Entry> changedEntries = new ArrayList<Entry>();
+		HashSet<String> removedKeys;
+		synchronized (this) {
+			for (String key : changed) {
+				Entry entry = entries.get(key);
+				if (entry != null) {
+					// copy since the entries keep changing
+					changedEntries.add(new Entry(entry.component, entry.intent, entry.launchCount, entry.lastLaunch, entry.score, entry
+							.getTimeBuckets()));
+				}
+			}
+			removedKeys = new HashSet<String>(removed);
+			changed.clear();
+			removed.clear();
+		}
+		if (changedEntries.isEmpty() && removedKeys.isEmpty()) {
+			return;
+		}
+		try {
+			LaunchStatsTable.updateLaunchStats(context, changedEntries, removedKeys);
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "write", e);
+		}
+	}
+
+	private static int getTimeBucket(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		return calendar.get(Calendar.HOUR_OF_DAY) * TIME_BUCKETS / 24;
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.apps;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.database.RecentAppsTable;
+
+/**
+ * Most recently used list of the apps launched by the user. The list is
+ * kept in memory and the changes are written to the database on a
+ * background thread; changes made while a write is pending are coalesced
+ * into the same write. The launches are also counted by the launch statistics
+ * which are written by the same thread.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class RecentApps {
+	private static final String LOG_TAG = "RecentApps";
+
+	private Context context;
+	private LaunchStats launchStats;
+	// least recent first
+	private LinkedList<Intent> recents;
+	// changes not written to the database yet
+	private LinkedHashMap<String, Intent> pendingLaunches = new LinkedHashMap<String, Intent>();
+	private HashSet<String> pendingRemovals = new HashSet<String>();
+	private AtomicBoolean writeScheduled = new AtomicBoolean();
+	// a single thread keeps the writes in order
+	private ExecutorService executor;
+
+	private Runnable writer = new Runnable() {
+		public void run() {
+			writeScheduled.set(false);
+			ArrayList<Intent> launched;
+			HashSet<String> removed;
+			synchronized (RecentApps.this) {
+				launched = new ArrayList<Intent>(pendingLaunches.values());
+				removed = new HashSet<String>(pendingRemovals);
+				pendingLaunches.clear();
+				pendingRemovals.clear();
+			}
+			if (!launched.isEmpty() || !removed.isEmpty()) {
+				try {
+					RecentAppsTable.updateRecentApps(context, launched, removed, RecentAppsTable.MAX_RECENT_TASKS);
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "write", e);
+				}
+			}
+			launchStats.write();
+		}
+	};
+
+	/**
+	 * @param context
+	 * @param launchStats
+	 */
+	public RecentApps(Context context, LaunchStats launchStats) {
+		this.context = context.getApplicationContext();
+		this.launchStats = launchStats;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return new Thread(new Runnable() {
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, LOG_TAG);
+			}
+		});
+	}
+
+	/**
+	 * Get the shared recent apps owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static RecentApps getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getRecentApps();
+	}
+
+	/**
+	 * Get the intents of the recent apps. The persisted recent apps are only
+	 * read the first time.
+	 * 
+	 * @return the intents, least recent first
+	 */
+	public synchronized List<Intent> getRecents() {
+		load();
+		return new ArrayList<Intent>(recents);
+	}
+
+	private void load() {
+		if (recents == null) {
+			recents = new LinkedList<Intent>();
+			ArrayList<ApplicationInfo> persistedRecents = RecentAppsTable.getAllRecentApps(context);
+			if (persistedRecents == null || persistedRecents.size() == 0) {
+				// first time, persist the system recent apps
+				RecentAppsTable.persistRecents(context);
+				persistedRecents = RecentAppsTable.getAllRecentApps(context);
+			}
+			if (persistedRecents != null) {
+				for (ApplicationInfo recent : persistedRecents) {
+					if (recent.getIntent() != null) {
+						recents.add(recent.getIntent());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Make an app the most recent app.
+	 * 
+	 * @param intent
+	 */
+	public synchronized void onLaunched(Intent intent) {
+		String key = RecentAppsTable.getKey(intent);
+		if (key == null) {
+			return;
+		}
+		load();
+		removeFromList(key);
+		recents.add(intent);
+		while (recents.size() > RecentAppsTable.MAX_RECENT_TASKS) {
+			recents.removeFirst();
+		}
+		// move the app to the end of the pending launches
+		pendingLaunches.remove(key);
+		pendingLaunches.put(key, intent);
+		pendingRemovals.remove(key);
+		launchStats.onLaunched(intent, System.currentTimeMillis());
+		scheduleWrite();
+	}
+
+	/**
+	 * Remove an app that no longer exists.
+	 * 
+	 * @param intent
+	 */
+	public synchronized void remove(Intent intent) {
+		String key = RecentAppsTable.getKey(intent);
+		if (key == null) {
+			return;
+		}
+		load();
+		removeFromList(key);
+		pendingLaunches.remove(key);
+		pendingRemovals.add(key);
+		launchStats.remove(intent);
+		scheduleWrite();
+	}
+
+	private void removeFromList(String key) {
+		Iterator<Intent> iterator = recents.iterator();
+		while (iterator.hasNext()) {
+			if (key.equals(RecentAppsTable.getKey(iterator.next()))) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private void scheduleWrite() {
+		if (writeScheduled.compareAndSet(false, true)) {
+			executor.execute(writer);
+		}
+	}
+
+}
@@ -15,17 +15,14 @@
  */
 package com.entertailion.android.launcher.apps;
 
-import java.util.ArrayList;
-
 import android.content.Context;
 import android.widget.ImageView;
 
 import com.entertailion.android.launcher.Dialogs;
 import com.entertailion.android.launcher.Launcher;
-import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.LauncherModel;
 import com.entertailion.android.launcher.R;
 import com.entertailion.android.launcher.database.DatabaseHelper;
-import com.entertailion.android.launcher.database.ItemsTable;
 import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.utils.Analytics;
 import com.entertailion.android.launcher.utils.Utils;
@@ -74,8 +71,7 @@ public class VirtualAppInfo extends ItemInfo {
 			Dialogs.displayBrowserHistory(context);
 			return;
 		case DatabaseHelper.VIRTUAL_ALL_APPS_TYPE:
-			ArrayList<ApplicationInfo> applications = ((LauncherApplication) context.getApplicationContext()).getApplications();
-			Dialogs.displayAllApps(context, applications);
+			Dialogs.displayAllApps(context);
 			return;
 		case DatabaseHelper.VIRTUAL_SPOTLIGHT_WEB_APPS_TYPE:
 			Dialogs.displayAllSpotlight(context);
@@ -115,12 +111,12 @@ public class VirtualAppInfo extends ItemInfo {
 
 	@Override
 	public void persistInsert(Context context, int rowId, int position) throws Exception {
-		ItemsTable.insertItem(context, rowId, position, getTitle(), getIntent(), null, type);
+		LauncherModel.getInstance(context).insertItem(rowId, position, getTitle(), getIntent(), null, type);
 	}
 
 	@Override
 	public void persistUpdate(Context context, int rowId, int position) throws Exception {
-		ItemsTable.updateItem(context, getId(), rowId, position, getTitle(), getIntent(), null, type);
+		LauncherModel.getInstance(context).updateItem(getId(), rowId, position, getTitle(), getIntent(), null, type);
 	}
 
 }
@@ -63,7 +63,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 	private Context context;
 
-	public final static int CURRENT_DATABASE_VERSION = 1;
+	public final static int CURRENT_DATABASE_VERSION = 2;
 	public static final String DATABASE_NAME = "launcher.db";
 
 	// Row table
@@ -88,6 +88,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	// Recent apps table
 	public final static String RECENT_APPS_TABLE = "recent_apps";
 
+	// Launch stats table
+	public final static String LAUNCH_STATS_TABLE = "launch_stats";
+	public final static String COMPONENT_COLUMN = "component";
+	public final static String LAUNCH_COUNT_COLUMN = "launchCount";
+	public final static String LAST_LAUNCH_COLUMN = "lastLaunch";
+	public final static String SCORE_COLUMN = "score";
+	public final static String TIME_BUCKETS_COLUMN = "timeBuckets";
+
 	// Track id of default items row
 	private long itemsRowId;
 
@@ -124,6 +132,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 		createSpotlightTable(db);
 		populateSpotlightTable(db);
 		createRecentAppsTable(db);
+		createLaunchStatsTable(db);
 	}
 
 	/**
@@ -280,6 +289,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 		Log.i(LOG_TAG, RECENT_APPS_TABLE + " table was created successfully");
 	}
 
+	/**
+	 * Create launch stats table
+	 * 
+	 * @param db
+	 */
+	private void createLaunchStatsTable(SQLiteDatabase db) {
+		String TABLE_CREATE = "CREATE TABLE " + LAUNCH_STATS_TABLE + " (" + COMPONENT_COLUMN + " STRING PRIMARY KEY, " + INTENT_COLUMN + " STRING, "
+				+ LAUNCH_COUNT_COLUMN + " INTEGER, " + LAST_LAUNCH_COLUMN + " INTEGER, " + SCORE_COLUMN + " REAL, " + TIME_BUCKETS_COLUMN + " STRING "
+				+ ");";
+
+		db.execSQL(TABLE_CREATE);
+		Log.i(LOG_TAG, LAUNCH_STATS_TABLE + " table was created successfully");
+	}
+
 	/**
 	 * Upgrade database
 	 * 
@@ -354,8 +377,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	public static boolean clearTables(Context context) {
 		boolean success = true;
 		Log.i(LOG_TAG, "Clearing all databases");
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		SQLiteDatabase db = DatabaseManager.getInstance(context).getDatabase();
 		try {
 			db.beginTransaction();
 
@@ -374,7 +396,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 			success = false;
 		} finally {
 			db.endTransaction();
-			db.close();
 		}
 		return success;
 	}
@@ -385,7 +406,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 	 * @param db
 	 */
 	private void upgradeFrom1To2(SQLiteDatabase db) {
-		// TODO future versions...
+		createLaunchStatsTable(db);
 	}
 
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.database;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+
+/**
+ * Process-wide access to the launcher database. Opening the database is
+ * expensive on the low-end Google TV devices, so a single helper and
+ * connection are kept open for the lifetime of the application and the
+ * compiled statements for the frequently used queries are reused.
+ * 
+ * SQLiteDatabase serializes access internally; compiled statements are not
+ * thread safe and have to be synchronized on while their arguments are bound
+ * and the statement is executed.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class DatabaseManager {
+	private static String LOG_TAG = "DatabaseManager";
+
+	private DatabaseHelper databaseHelper;
+	private SQLiteDatabase database;
+	private final Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+	private final Map<String, Timing> timings = new HashMap<String, Timing>();
+
+	/**
+	 * @param context
+	 */
+	public DatabaseManager(Context context) {
+		databaseHelper = new DatabaseHelper(context.getApplicationContext());
+	}
+
+	/**
+	 * Get the shared database manager owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static DatabaseManager getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getDatabaseManager();
+	}
+
+	/**
+	 * Get the shared database connection. The connection must not be closed
+	 * by callers.
+	 * 
+	 * @return
+	 */
+	public synchronized SQLiteDatabase getDatabase() {
+		if (database == null || !database.isOpen()) {
+			database = databaseHelper.getWritableDatabase();
+		}
+		return database;
+	}
+
+	/**
+	 * Get a compiled statement for the SQL. Statements are compiled once and
+	 * reused for the lifetime of the connection.
+	 * 
+	 * @param sql
+	 * @return
+	 */
+	public SQLiteStatement getStatement(String sql) {
+		synchronized (statements) {
+			SQLiteStatement statement = statements.get(sql);
+			if (statement == null) {
+				statement = getDatabase().compileStatement(sql);
+				statements.put(sql, statement);
+			}
+			return statement;
+		}
+	}
+
+	/**
+	 * Bind a string value to a compiled statement; null values are bound as
+	 * SQL NULL.
+	 * 
+	 * @param statement
+	 * @param index
+	 * @param value
+	 */
+	public static void bindString(SQLiteStatement statement, int index, String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+
+	/**
+	 * Start timing a database operation.
+	 * 
+	 * @return start time to pass to recordTiming
+	 */
+	public long startTiming() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the duration of a database operation.
+	 * 
+	 * @param operation
+	 * @param startTime
+	 */
+	public void recordTiming(String operation, long startTime) {
+		long duration = System.nanoTime() - startTime;
+		synchronized (timings) {
+			Timing timing = timings.get(operation);
+			if (timing == null) {
+				timing = new Timing();
+				timings.put(operation, timing);
+			}
+			timing.count++;
+			timing.totalTime += duration;
+			if (duration > timing.maxTime) {
+				timing.maxTime = duration;
+			}
+		}
+	}
+
+	/**
+	 * Get a copy of the timing counters keyed by operation.
+	 * 
+	 * @return
+	 */
+	public Map<String, Timing> getTimings() {
+		Map<String, Timing> copy = new HashMap<String, Timing>();
+		synchronized (timings) {
+			for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+				Timing timing = new Timing();
+				timing.count = entry.getValue().count;
+				timing.totalTime = entry.getValue().totalTime;
+				timing.maxTime = entry.getValue().maxTime;
+				copy.put(entry.getKey(), timing);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Log the timing counters.
+	 */
+	public void logTimings() {
+		for (Map.Entry<String, Timing> entry : getTimings().entrySet()) {
+			Log.d(LOG_TAG, entry.getKey() + ": " + entry.getValue());
+		}
+	}
+
+	/**
+	 * Reset the timing counters.
+	 */
+	public void resetTimings() {
+		synchronized (timings) {
+			timings.clear();
+		}
+	}
+
+	/**
+	 * Release the compiled statements and close the connection.
+	 */
+	public void close() {
+		synchronized (statements) {
+			for (SQLiteStatement statement : statements.values()) {
+				try {
+					statement.close();
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "close", e);
+				}
+			}
+			statements.clear();
+			synchronized (this) {
+				if (database != null) {
+					database.close();
+					database = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Timing counters for a database operation.
+	 */
+	public static class Timing {
+		private int count;
+		private long totalTime;
+		private long maxTime;
+
+		/**
+		 * Number of times the operation was executed
+		 * 
+		 * @return
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Total time spent in the operation in nanoseconds
+		 * 
+		 * @return
+		 */
+		public long getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * Longest execution of the operation in nanoseconds
+		 * 
+		 * @return
+		 */
+		public long getMaxTime() {
+			return maxTime;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + ", total=" + (totalTime / 1000000) + "ms, average=" + (count == 0 ? 0 : totalTime / count / 1000) + "us, max="
+					+ (maxTime / 1000) + "us";
+		}
+	}
+
+}
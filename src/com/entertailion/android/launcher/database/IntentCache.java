@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.database;
+
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.Intent;
+
+/**
+ * Cache of the intents parsed from the URI strings stored in the database.
+ * Parsing intent URIs is relatively expensive and the same items are bound
+ * every time the home screen is displayed.
+ * 
+ * Intents are mutable, so callers are given a copy of the cached intent.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class IntentCache {
+	private static final int MAX_ENTRIES = 256;
+
+	private static final Map<String, Intent> intents = new LinkedHashMap<String, Intent>(32, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Intent> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Parse an intent URI created with Intent.URI_INTENT_SCHEME.
+	 * 
+	 * @param uri
+	 * @return copy of the parsed intent
+	 * @throws URISyntaxException
+	 */
+	public static Intent parseUri(String uri) throws URISyntaxException {
+		Intent intent = null;
+		synchronized (intents) {
+			intent = intents.get(uri);
+		}
+		if (intent == null) {
+			intent = Intent.parseUri(uri, Intent.URI_INTENT_SCHEME);
+			synchronized (intents) {
+				intents.put(uri, intent);
+			}
+		}
+		return new Intent(intent);
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public static void clear() {
+		synchronized (intents) {
+			intents.clear();
+		}
+	}
+
+}
@@ -15,13 +15,14 @@
  */
 package com.entertailion.android.launcher.database;
 
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import com.entertailion.android.launcher.apps.ApplicationInfo;
@@ -39,75 +40,89 @@ import com.entertailion.android.launcher.spotlight.SpotlightInfo;
 public class ItemsTable {
 	private static String LOG_TAG = "ItemsTable";
 
+	// a null id lets SQLite assign the next id
+	private static final String INSERT_ITEM_SQL = "INSERT INTO " + DatabaseHelper.ITEMS_TABLE + " (" + DatabaseHelper.ID_COLUMN + ", "
+			+ DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.ROW_ID_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN
+			+ ", " + DatabaseHelper.ICON_COLUMN + ", " + DatabaseHelper.ITEM_TYPE_COLUMN + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+	// a null intent keeps the existing intent value
+	private static final String UPDATE_ITEM_SQL = "UPDATE " + DatabaseHelper.ITEMS_TABLE + " SET " + DatabaseHelper.TITLE_COLUMN + "=?, "
+			+ DatabaseHelper.ROW_ID_COLUMN + "=?, " + DatabaseHelper.POSITION_COLUMN + "=?, " + DatabaseHelper.INTENT_COLUMN + "=COALESCE(?, "
+			+ DatabaseHelper.INTENT_COLUMN + "), " + DatabaseHelper.ICON_COLUMN + "=?, " + DatabaseHelper.ITEM_TYPE_COLUMN + "=? WHERE "
+			+ DatabaseHelper.ID_COLUMN + "=?";
+	private static final String DELETE_ITEM_SQL = "DELETE FROM " + DatabaseHelper.ITEMS_TABLE + " WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String MAX_ID_SQL = "SELECT IFNULL(MAX(" + DatabaseHelper.ID_COLUMN + "), 0) FROM " + DatabaseHelper.ITEMS_TABLE;
+	private static final String COUNT_ITEMS_SQL = "SELECT COUNT(*) FROM " + DatabaseHelper.ITEMS_TABLE + " WHERE " + DatabaseHelper.ROW_ID_COLUMN + "=?";
+	private static final String GET_ITEMS_SQL = "SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN + ", "
+			+ DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN + ", " + DatabaseHelper.ICON_COLUMN + ", " + DatabaseHelper.ITEM_TYPE_COLUMN
+			+ " FROM " + DatabaseHelper.ITEMS_TABLE + " WHERE " + DatabaseHelper.ROW_ID_COLUMN + "=? ORDER BY " + DatabaseHelper.POSITION_COLUMN;
+
 	public static long insertItem(Context context, int row, int position, String title, Intent intent, String icon, int itemType) throws Exception {
+		return insertItem(context, DatabaseHelper.NO_ID, row, position, title, intent, icon, itemType);
+	}
+
+	/**
+	 * Insert an item with an id assigned by the caller.
+	 * 
+	 * @param context
+	 * @param id
+	 *            item id or NO_ID to let the database assign the id
+	 * @param row
+	 * @param position
+	 * @param title
+	 * @param intent
+	 * @param icon
+	 * @param itemType
+	 * @return
+	 * @throws Exception
+	 */
+	public static long insertItem(Context context, int id, int row, int position, String title, Intent intent, String icon, int itemType)
+			throws Exception {
 		Log.d(LOG_TAG, "insertItem");
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
-		long id = DatabaseHelper.NO_ID;
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		long insertedId = DatabaseHelper.NO_ID;
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.TITLE_COLUMN, title);
-			values.put(DatabaseHelper.ROW_ID_COLUMN, row);
-			values.put(DatabaseHelper.POSITION_COLUMN, position);
-			if (intent != null) {
-				values.put(DatabaseHelper.INTENT_COLUMN, intent.toUri(Intent.URI_INTENT_SCHEME));
+			SQLiteStatement statement = databaseManager.getStatement(INSERT_ITEM_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				if (id == DatabaseHelper.NO_ID) {
+					statement.bindNull(1);
+				} else {
+					statement.bindLong(1, id);
+				}
+				DatabaseManager.bindString(statement, 2, title);
+				statement.bindLong(3, row);
+				statement.bindLong(4, position);
+				DatabaseManager.bindString(statement, 5, intent != null ? intent.toUri(Intent.URI_INTENT_SCHEME) : null);
+				DatabaseManager.bindString(statement, 6, icon);
+				statement.bindLong(7, itemType);
+				insertedId = statement.executeInsert();
 			}
-			values.put(DatabaseHelper.ICON_COLUMN, icon);
-			values.put(DatabaseHelper.ITEM_TYPE_COLUMN, itemType);
-			id = db.insertOrThrow(DatabaseHelper.ITEMS_TABLE, DatabaseHelper.TITLE_COLUMN, values);
-			db.setTransactionSuccessful();
 			Log.d(LOG_TAG, "insertItem: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "insertItem: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("insertItem", start);
 		}
-		return id;
+		return insertedId;
 	}
 
 	public static ArrayList<ItemInfo> getItems(Context context, int row) {
 		Log.d(LOG_TAG, "getItems: " + row);
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
 		Cursor cursor = null;
 		ArrayList<ItemInfo> items = null;
 		try {
-			cursor = db.rawQuery("SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN + ", " + DatabaseHelper.TITLE_COLUMN + ", "
-					+ DatabaseHelper.INTENT_COLUMN + ", " + DatabaseHelper.ICON_COLUMN + ", " + DatabaseHelper.ITEM_TYPE_COLUMN + " FROM "
-					+ DatabaseHelper.ITEMS_TABLE + " WHERE " + DatabaseHelper.ROW_ID_COLUMN + "=" + row + " ORDER BY " + DatabaseHelper.POSITION_COLUMN, null);
+			// bound arguments let SQLite reuse the compiled query
+			cursor = db.rawQuery(GET_ITEMS_SQL, new String[] { String.valueOf(row) });
 			if (cursor.moveToFirst()) {
 				items = new ArrayList<ItemInfo>();
 				do {
-					int position = cursor.getInt(1);
-					Intent intent = null;
-					String intentValue = cursor.getString(3);
-					if (intentValue != null) {
-						intent = Intent.parseUri(cursor.getString(3), Intent.URI_INTENT_SCHEME);
-					}
-					String title = cursor.getString(2);
-					int type = cursor.getInt(5);
-					String icon = cursor.getString(4);
-					ItemInfo itemInfo = null;
-					switch (type) {
-					case DatabaseHelper.APP_TYPE:
-						itemInfo = new ApplicationInfo(cursor.getInt(0), position, title, intent);
-						break;
-					case DatabaseHelper.SPOTLIGHT_TYPE:
-						itemInfo = new SpotlightInfo(cursor.getInt(0), position, title, intent, null, icon);
-						break;
-					case DatabaseHelper.SHORTCUT_TYPE:
-						itemInfo = new ShortcutInfo(cursor.getInt(0), position, title, intent, icon);
-						break;
-					default:
-						if (type >= DatabaseHelper.VIRTUAL_APP_TYPE) {
-							itemInfo = new VirtualAppInfo(cursor.getInt(0), position, title, type);
-						}
-					}
-					items.add(itemInfo);
+					items.add(createItem(cursor.getInt(0), cursor.getInt(1), cursor.getString(2), cursor.getString(3), cursor.getString(4), cursor.getInt(5)));
 				} while ((cursor.moveToNext()));
 			}
 		} catch (Exception e) {
@@ -115,55 +130,153 @@ public class ItemsTable {
 		} finally {
 			if (null != cursor)
 				cursor.close();
-			db.close();
+			databaseManager.recordTiming("getItems", start);
 		}
 		return items;
 	}
 
+	/**
+	 * Create the item data structure for a persisted item.
+	 * 
+	 * @param id
+	 * @param position
+	 * @param title
+	 * @param intentValue
+	 *            intent URI string
+	 * @param icon
+	 * @param type
+	 * @return
+	 * @throws URISyntaxException
+	 */
+	public static ItemInfo createItem(int id, int position, String title, String intentValue, String icon, int type) throws URISyntaxException {
+		Intent intent = null;
+		if (intentValue != null) {
+			intent = IntentCache.parseUri(intentValue);
+		}
+		return createItem(id, position, title, intent, icon, type);
+	}
+
+	/**
+	 * Create the item data structure for an item type.
+	 * 
+	 * @param id
+	 * @param position
+	 * @param title
+	 * @param intent
+	 * @param icon
+	 * @param type
+	 * @return
+	 */
+	public static ItemInfo createItem(int id, int position, String title, Intent intent, String icon, int type) {
+		ItemInfo itemInfo = null;
+		switch (type) {
+		case DatabaseHelper.APP_TYPE:
+			itemInfo = new ApplicationInfo(id, position, title, intent);
+			break;
+		case DatabaseHelper.SPOTLIGHT_TYPE:
+			itemInfo = new SpotlightInfo(id, position, title, intent, null, icon);
+			break;
+		case DatabaseHelper.SHORTCUT_TYPE:
+			itemInfo = new ShortcutInfo(id, position, title, intent, icon);
+			break;
+		default:
+			if (type >= DatabaseHelper.VIRTUAL_APP_TYPE) {
+				itemInfo = new VirtualAppInfo(id, position, title, type);
+			}
+		}
+		return itemInfo;
+	}
+
+	/**
+	 * Get the largest item id in use.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static int getMaxId(Context context) {
+		int id = 0;
+		try {
+			SQLiteStatement statement = DatabaseManager.getInstance(context).getStatement(MAX_ID_SQL);
+			synchronized (statement) {
+				id = (int) statement.simpleQueryForLong();
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getMaxId failed", e);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the number of items in a row.
+	 * 
+	 * @param context
+	 * @param row
+	 * @return
+	 */
+	public static int getItemCount(Context context, int row) {
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		int count = 0;
+		try {
+			SQLiteStatement statement = databaseManager.getStatement(COUNT_ITEMS_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				statement.bindLong(1, row);
+				count = (int) statement.simpleQueryForLong();
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getItemCount failed", e);
+		} finally {
+			databaseManager.recordTiming("getItemCount", start);
+		}
+		return count;
+	}
+
 	public static void updateItem(Context context, int id, int row, int position, String title, Intent intent, String icon, int itemType) throws Exception {
 		Log.d(LOG_TAG, "updateItem");
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.TITLE_COLUMN, title);
-			values.put(DatabaseHelper.ROW_ID_COLUMN, row);
-			values.put(DatabaseHelper.POSITION_COLUMN, position);
-			if (intent != null) {
-				values.put(DatabaseHelper.INTENT_COLUMN, intent.toUri(Intent.URI_INTENT_SCHEME));
+			SQLiteStatement statement = databaseManager.getStatement(UPDATE_ITEM_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				DatabaseManager.bindString(statement, 1, title);
+				statement.bindLong(2, row);
+				statement.bindLong(3, position);
+				DatabaseManager.bindString(statement, 4, intent != null ? intent.toUri(Intent.URI_INTENT_SCHEME) : null);
+				DatabaseManager.bindString(statement, 5, icon);
+				statement.bindLong(6, itemType);
+				statement.bindLong(7, id);
+				statement.executeUpdateDelete();
 			}
-			values.put(DatabaseHelper.ICON_COLUMN, icon);
-			values.put(DatabaseHelper.ITEM_TYPE_COLUMN, itemType);
-			db.update(DatabaseHelper.ITEMS_TABLE, values, DatabaseHelper.ID_COLUMN + "=?", new String[] { String.valueOf(id) });
-			db.setTransactionSuccessful();
 			Log.d(LOG_TAG, "updateItem: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "updateItem: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("updateItem", start);
 		}
 	}
 
 	public static void deleteItem(Context context, int id) throws Exception {
 		Log.d(LOG_TAG, "deleteItem");
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			db.delete(DatabaseHelper.ITEMS_TABLE, DatabaseHelper.ID_COLUMN + "=?", new String[] { String.valueOf(id) });
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(DELETE_ITEM_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				statement.bindLong(1, id);
+				statement.executeUpdateDelete();
+			}
 			Log.d(LOG_TAG, "deleteItem: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "deleteItem: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("deleteItem", start);
 		}
 	}
 
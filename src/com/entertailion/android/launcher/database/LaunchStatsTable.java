@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.entertailion.android.launcher.apps.LaunchStats;
+
+/**
+ * Persist the launch statistics of the apps. There is one row per app
+ * component.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class LaunchStatsTable {
+	private static String LOG_TAG = "LaunchStatsTable";
+
+	private static final String REPLACE_LAUNCH_STATS_SQL = "INSERT OR REPLACE INTO " + DatabaseHelper.LAUNCH_STATS_TABLE + " ("
+			+ DatabaseHelper.COMPONENT_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN + ", " + DatabaseHelper.LAUNCH_COUNT_COLUMN + ", "
+			+ DatabaseHelper.LAST_LAUNCH_COLUMN + ", " + DatabaseHelper.SCORE_COLUMN + ", " + DatabaseHelper.TIME_BUCKETS_COLUMN
+			+ ") VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String DELETE_LAUNCH_STATS_SQL = "DELETE FROM " + DatabaseHelper.LAUNCH_STATS_TABLE + " WHERE "
+			+ DatabaseHelper.COMPONENT_COLUMN + "=?";
+	private static final String GET_LAUNCH_STATS_SQL = "SELECT " + DatabaseHelper.COMPONENT_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN + ", "
+			+ DatabaseHelper.LAUNCH_COUNT_COLUMN + ", " + DatabaseHelper.LAST_LAUNCH_COLUMN + ", " + DatabaseHelper.SCORE_COLUMN + ", "
+			+ DatabaseHelper.TIME_BUCKETS_COLUMN + " FROM " + DatabaseHelper.LAUNCH_STATS_TABLE;
+
+	public static List<LaunchStats.Entry> getAllLaunchStats(Context context) {
+		Log.d(LOG_TAG, "getAllLaunchStats");
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
+		Cursor cursor = null;
+		ArrayList<LaunchStats.Entry> entries = new ArrayList<LaunchStats.Entry>();
+		try {
+			cursor = db.rawQuery(GET_LAUNCH_STATS_SQL, null);
+			if (cursor.moveToFirst()) {
+				do {
+					Intent intent = null;
+					String intentValue = cursor.getString(1);
+					if (intentValue != null) {
+						intent = IntentCache.parseUri(intentValue);
+					}
+					entries.add(new LaunchStats.Entry(cursor.getString(0), intent, cursor.getInt(2), cursor.getLong(3), cursor.getDouble(4),
+							parseTimeBuckets(cursor.getString(5))));
+				} while ((cursor.moveToNext()));
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getAllLaunchStats failed", e);
+		} finally {
+			if (null != cursor)
+				cursor.close();
+			databaseManager.recordTiming("getAllLaunchStats", start);
+		}
+		return entries;
+	}
+
+	/**
+	 * Write the changed statistics in a single transaction.
+	 * 
+	 * @param context
+	 * @param changed
+	 *            statistics to insert or replace
+	 * @param removed
+	 *            components to delete
+	 * @throws Exception
+	 */
+	public static void updateLaunchStats(Context context, List<LaunchStats.Entry> changed, Set<String> removed) throws Exception {
+		Log.d(LOG_TAG, "updateLaunchStats: changed=" + changed.size() + ", removed=" + removed.size());
+
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
+		SQLiteStatement statement = databaseManager.getStatement(REPLACE_LAUNCH_STATS_SQL);
+		SQLiteStatement deleteStatement = databaseManager.getStatement(DELETE_LAUNCH_STATS_SQL);
+		synchronized (statement) {
+			synchronized (deleteStatement) {
+				db.beginTransaction();
+				try {
+					for (LaunchStats.Entry entry : changed) {
+						statement.clearBindings();
+						DatabaseManager.bindString(statement, 1, entry.getComponent());
+						DatabaseManager.bindString(statement, 2, entry.getIntent() != null ? entry.getIntent().toUri(Intent.URI_INTENT_SCHEME) : null);
+						statement.bindLong(3, entry.getLaunchCount());
+						statement.bindLong(4, entry.getLastLaunch());
+						statement.bindDouble(5, entry.getScore());
+						DatabaseManager.bindString(statement, 6, formatTimeBuckets(entry.getTimeBuckets()));
+						statement.executeInsert();
+					}
+					for (String component : removed) {
+						deleteStatement.clearBindings();
+						DatabaseManager.bindString(deleteStatement, 1, component);
+						deleteStatement.executeUpdateDelete();
+					}
+					db.setTransactionSuccessful();
+					Log.d(LOG_TAG, "updateLaunchStats: success");
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "updateLaunchStats: failed", e);
+					throw new Exception(e);
+				} finally {
+					db.endTransaction();
+					databaseManager.recordTiming("updateLaunchStats", start);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Format the launch counts by time of day, e.g. "1,0,4,2".
+	 * 
+	 * @param timeBuckets
+	 * @return
+	 */
+	private static String formatTimeBuckets(int[] timeBuckets) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < timeBuckets.length; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(timeBuckets[i]);
+		}
+		return builder.toString();
+	}
+
+	private static int[] parseTimeBuckets(String value) {
+		int[] timeBuckets = new int[LaunchStats.TIME_BUCKETS];
+		if (value != null) {
+			String[] counts = value.split(",");
+			for (int i = 0; i < counts.length && i < timeBuckets.length; i++) {
+				try {
+					timeBuckets[i] = Integer.parseInt(counts[i].trim());
+				} catch (NumberFormatException e) {
+				}
+			}
+		}
+		return timeBuckets;
+	}
+
+}
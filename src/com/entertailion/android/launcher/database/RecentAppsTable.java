@@ -16,14 +16,16 @@
 package com.entertailion.android.launcher.database;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import android.app.ActivityManager;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import com.entertailion.android.launcher.apps.ApplicationInfo;
@@ -40,45 +42,54 @@ public class RecentAppsTable {
 
 	public static final int MAX_RECENT_TASKS = 10;
 
+	private static final String INSERT_RECENT_APP_SQL = "INSERT INTO " + DatabaseHelper.RECENT_APPS_TABLE + " (" + DatabaseHelper.INTENT_COLUMN
+			+ ") VALUES (?)";
+	private static final String DELETE_RECENT_APP_SQL = "DELETE FROM " + DatabaseHelper.RECENT_APPS_TABLE + " WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String GET_RECENT_APPS_SQL = "SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN + " FROM "
+			+ DatabaseHelper.RECENT_APPS_TABLE + " ORDER BY " + DatabaseHelper.ID_COLUMN + " ASC";
+	private static final String TRIM_RECENT_APPS_SQL = "DELETE FROM " + DatabaseHelper.RECENT_APPS_TABLE + " WHERE " + DatabaseHelper.ID_COLUMN
+			+ " NOT IN (SELECT " + DatabaseHelper.ID_COLUMN + " FROM " + DatabaseHelper.RECENT_APPS_TABLE + " ORDER BY " + DatabaseHelper.ID_COLUMN
+			+ " DESC LIMIT ?)";
+
 	public static long insertRecentApp(Context context, Intent intent) throws Exception {
 		Log.d(LOG_TAG, "insertRecentApp: " + intent);
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		long id = DatabaseHelper.NO_ID;
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.INTENT_COLUMN, intent.toUri(Intent.URI_INTENT_SCHEME));
-			id = db.insertOrThrow(DatabaseHelper.RECENT_APPS_TABLE, DatabaseHelper.INTENT_COLUMN, values);
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(INSERT_RECENT_APP_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				DatabaseManager.bindString(statement, 1, intent.toUri(Intent.URI_INTENT_SCHEME));
+				id = statement.executeInsert();
+			}
 			Log.d(LOG_TAG, "insertRecentApp: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "insertRecentApp: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("insertRecentApp", start);
 		}
 		return id;
 	}
 
 	public static ArrayList<ApplicationInfo> getAllRecentApps(Context context) {
 		Log.d(LOG_TAG, "getAllRecentApps");
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
 		Cursor cursor = null;
 		ArrayList<ApplicationInfo> recents = null;
 		try {
-			cursor = db.rawQuery("SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.INTENT_COLUMN + " FROM " + DatabaseHelper.RECENT_APPS_TABLE
-					+ " ORDER BY " + DatabaseHelper.ID_COLUMN + " ASC", null);
+			cursor = db.rawQuery(GET_RECENT_APPS_SQL, null);
 			if (cursor.moveToFirst()) {
 				recents = new ArrayList<ApplicationInfo>();
 				do {
 					Intent intent = null;
 					String intentValue = cursor.getString(1);
 					if (intentValue != null) {
-						intent = Intent.parseUri(cursor.getString(1), Intent.URI_INTENT_SCHEME);
+						intent = IntentCache.parseUri(intentValue);
 					}
 					ApplicationInfo recent = new ApplicationInfo(cursor.getInt(0), 0, null, intent);
 					recents.add(recent);
@@ -89,21 +100,18 @@ public class RecentAppsTable {
 		} finally {
 			if (null != cursor)
 				cursor.close();
-			db.close();
+			databaseManager.recordTiming("getAllRecentApps", start);
 		}
 		return recents;
 	}
 
 	public static void removeAllRecentApps(Context context) {
 		Log.d(LOG_TAG, "removeAllRecentApps");
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		SQLiteDatabase db = DatabaseManager.getInstance(context).getDatabase();
 		try {
 			db.delete(DatabaseHelper.RECENT_APPS_TABLE, null, null);
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "removeAllRecentApps failed", e);
-		} finally {
-			db.close();
 		}
 	}
 
@@ -134,57 +142,100 @@ public class RecentAppsTable {
 		}
 	}
 
-	public static void persistRecentApp(Context context, ApplicationInfo applicationInfo) {
-		Log.d(LOG_TAG, "persistRecentApp");
-
-		// Persist the app if it isn't already in the recents list
-		ArrayList<ApplicationInfo> recents = getAllRecentApps(context);
-		boolean found = false;
-		if (recents != null) {
-			for (ApplicationInfo recentApplicationInfo : recents) {
-				if (recentApplicationInfo.getIntent() != null && applicationInfo.getIntent() != null
-						&& recentApplicationInfo.getIntent().getComponent() != null && applicationInfo.getIntent().getComponent() != null
-						&& recentApplicationInfo.getIntent().getComponent().getClassName().equals(applicationInfo.getIntent().getComponent().getClassName())) {
-					found = true;
-					break;
-				}
-			}
-		}
-		if (!found) {
+	/**
+	 * Apply a batch of changes to the recent apps in a single transaction.
+	 * The launched apps replace the existing rows for the same component and
+	 * are added as the most recent apps; the table is then trimmed to the
+	 * most recent rows.
+	 * 
+	 * @param context
+	 * @param launched
+	 *            intents of the launched apps, least recent first
+	 * @param removed
+	 *            components of the apps to remove
+	 * @param max
+	 *            number of recent apps to keep
+	 * @throws Exception
+	 */
+	public static void updateRecentApps(Context context, List<Intent> launched, Set<String> removed, int max) throws Exception {
+		Log.d(LOG_TAG, "updateRecentApps: launched=" + launched.size() + ", removed=" + removed.size());
+
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
+		SQLiteStatement statement = databaseManager.getStatement(INSERT_RECENT_APP_SQL);
+		// lock the statement before the transaction to keep the lock order
+		// consistent with insertRecentApp
+		synchronized (statement) {
+			db.beginTransaction();
 			try {
-				insertRecentApp(context, applicationInfo.getIntent());
+				Set<String> replaced = new HashSet<String>(removed);
+				for (Intent intent : launched) {
+					replaced.add(getKey(intent));
+				}
+				ArrayList<ApplicationInfo> rows = getAllRecentApps(context);
+				if (rows != null) {
+					for (ApplicationInfo row : rows) {
+						if (replaced.contains(getKey(row.getIntent()))) {
+							deleteRecentApp(context, row.getId());
+						}
+					}
+				}
+				for (Intent intent : launched) {
+					statement.clearBindings();
+					DatabaseManager.bindString(statement, 1, intent.toUri(Intent.URI_INTENT_SCHEME));
+					statement.executeInsert();
+				}
+				SQLiteStatement trimStatement = databaseManager.getStatement(TRIM_RECENT_APPS_SQL);
+				synchronized (trimStatement) {
+					trimStatement.clearBindings();
+					trimStatement.bindLong(1, max);
+					trimStatement.executeUpdateDelete();
+				}
+				db.setTransactionSuccessful();
+				Log.d(LOG_TAG, "updateRecentApps: success");
 			} catch (Exception e) {
-				Log.e(LOG_TAG, "persistRecentApp", e);
+				Log.e(LOG_TAG, "updateRecentApps: failed", e);
+				throw new Exception(e);
+			} finally {
+				db.endTransaction();
+				databaseManager.recordTiming("updateRecentApps", start);
 			}
 		}
-		// trim the list of recents
-		while (recents != null && recents.size() >= MAX_RECENT_TASKS) {
-			Log.d(LOG_TAG, "size="+recents.size());
-			try {
-				deleteRecentApp(context, recents.get(0).getId());
-			} catch (Exception e) {
-				Log.e(LOG_TAG, "persistRecentApp", e);
-			}
-			recents = getAllRecentApps(context);
+	}
+
+	/**
+	 * Get the key identifying the app of a recent app intent.
+	 * 
+	 * @param intent
+	 * @return the class name of the component
+	 */
+	public static String getKey(Intent intent) {
+		if (intent != null && intent.getComponent() != null) {
+			return intent.getComponent().getClassName();
 		}
+		return null;
 	}
 
 	public static void deleteRecentApp(Context context, int id) throws Exception {
 		Log.d(LOG_TAG, "deleteRecentApp: "+id);
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			int num = db.delete(DatabaseHelper.RECENT_APPS_TABLE, DatabaseHelper.ID_COLUMN + "=?", new String[] { String.valueOf(id) });
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(DELETE_RECENT_APP_SQL);
+			int num = 0;
+			synchronized (statement) {
+				statement.clearBindings();
+				statement.bindLong(1, id);
+				num = statement.executeUpdateDelete();
+			}
 			Log.d(LOG_TAG, "deleteRecentApp: success: "+num);
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "deleteRecentApp: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("deleteRecentApp", start);
 		}
 	}
 
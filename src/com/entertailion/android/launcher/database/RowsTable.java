@@ -17,12 +17,13 @@ package com.entertailion.android.launcher.database;
 
 import java.util.ArrayList;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.row.RowInfo;
 
 /**
@@ -35,40 +36,77 @@ import com.entertailion.android.launcher.row.RowInfo;
 public class RowsTable {
 	private static String LOG_TAG = "RowTable";
 
+	// a null id lets SQLite assign the next id
+	private static final String INSERT_ROW_SQL = "INSERT INTO " + DatabaseHelper.ROWS_TABLE + " (" + DatabaseHelper.ID_COLUMN + ", "
+			+ DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN + ", " + DatabaseHelper.ROW_TYPE_COLUMN + ") VALUES (?, ?, ?, ?)";
+	private static final String MAX_ID_SQL = "SELECT IFNULL(MAX(" + DatabaseHelper.ID_COLUMN + "), 0) FROM " + DatabaseHelper.ROWS_TABLE;
+	private static final String UPDATE_ROW_SQL = "UPDATE " + DatabaseHelper.ROWS_TABLE + " SET " + DatabaseHelper.TITLE_COLUMN + "=?, "
+			+ DatabaseHelper.POSITION_COLUMN + "=?, " + DatabaseHelper.ROW_TYPE_COLUMN + "=? WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String DELETE_ROW_SQL = "DELETE FROM " + DatabaseHelper.ROWS_TABLE + " WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String GET_ROWS_SQL = "SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN
+			+ ", " + DatabaseHelper.ROW_TYPE_COLUMN + " FROM " + DatabaseHelper.ROWS_TABLE + " ORDER BY " + DatabaseHelper.POSITION_COLUMN;
+	private static final String GET_ROWS_WITH_ITEMS_SQL = "SELECT r." + DatabaseHelper.ID_COLUMN + ", r." + DatabaseHelper.TITLE_COLUMN + ", r."
+			+ DatabaseHelper.POSITION_COLUMN + ", r." + DatabaseHelper.ROW_TYPE_COLUMN + ", i." + DatabaseHelper.ID_COLUMN + ", i."
+			+ DatabaseHelper.POSITION_COLUMN + ", i." + DatabaseHelper.TITLE_COLUMN + ", i." + DatabaseHelper.INTENT_COLUMN + ", i."
+			+ DatabaseHelper.ICON_COLUMN + ", i." + DatabaseHelper.ITEM_TYPE_COLUMN + " FROM " + DatabaseHelper.ROWS_TABLE + " r LEFT JOIN "
+			+ DatabaseHelper.ITEMS_TABLE + " i ON i." + DatabaseHelper.ROW_ID_COLUMN + "=r." + DatabaseHelper.ID_COLUMN + " ORDER BY r."
+			+ DatabaseHelper.POSITION_COLUMN + ", r." + DatabaseHelper.ID_COLUMN + ", i." + DatabaseHelper.POSITION_COLUMN;
+
 	public static long insertRow(Context context, String title, int position, int type) throws Exception {
+		return insertRow(context, DatabaseHelper.NO_ID, title, position, type);
+	}
+
+	/**
+	 * Insert a row with an id assigned by the caller.
+	 * 
+	 * @param context
+	 * @param id
+	 *            row id or NO_ID to let the database assign the id
+	 * @param title
+	 * @param position
+	 * @param type
+	 * @return
+	 * @throws Exception
+	 */
+	public static long insertRow(Context context, int id, String title, int position, int type) throws Exception {
 		Log.d(LOG_TAG, "insertRow: " + title);
 
-		long id = DatabaseHelper.NO_ID;
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		long rowId = DatabaseHelper.NO_ID;
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.TITLE_COLUMN, title);
-			values.put(DatabaseHelper.POSITION_COLUMN, position);
-			values.put(DatabaseHelper.ROW_TYPE_COLUMN, type);
-			id = db.insertOrThrow(DatabaseHelper.ROWS_TABLE, DatabaseHelper.TITLE_COLUMN, values);
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(INSERT_ROW_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				if (id == DatabaseHelper.NO_ID) {
+					statement.bindNull(1);
+				} else {
+					statement.bindLong(1, id);
+				}
+				DatabaseManager.bindString(statement, 2, title);
+				statement.bindLong(3, position);
+				statement.bindLong(4, type);
+				rowId = statement.executeInsert();
+			}
 			Log.d(LOG_TAG, "insertRow: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "insertRow: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("insertRow", start);
 		}
-		return id;
+		return rowId;
 	}
 
 	public static ArrayList<RowInfo> getRows(Context context) {
 		Log.d(LOG_TAG, "getRows");
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
 		Cursor cursor = null;
 		ArrayList<RowInfo> rows = null;
 		try {
-			cursor = db.rawQuery("SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.POSITION_COLUMN + ", "
-					+ DatabaseHelper.ROW_TYPE_COLUMN + " FROM " + DatabaseHelper.ROWS_TABLE  + " ORDER BY " + DatabaseHelper.POSITION_COLUMN, null);
+			cursor = db.rawQuery(GET_ROWS_SQL, null);
 			if (cursor.moveToFirst()) {
 				rows = new ArrayList<RowInfo>();
 				do {
@@ -81,50 +119,122 @@ public class RowsTable {
 		} finally {
 			if (null != cursor)
 				cursor.close();
-			db.close();
+			databaseManager.recordTiming("getRows", start);
+		}
+		return rows;
+	}
+
+	/**
+	 * Get all the rows with their items in a single query. The rows are
+	 * ordered by position and each row has its items set, ordered by
+	 * position; rows without items have a null item list.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static ArrayList<RowInfo> getRowsWithItems(Context context) {
+		Log.d(LOG_TAG, "getRowsWithItems");
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
+		Cursor cursor = null;
+		ArrayList<RowInfo> rows = null;
+		try {
+			cursor = db.rawQuery(GET_ROWS_WITH_ITEMS_SQL, null);
+			if (cursor.moveToFirst()) {
+				rows = new ArrayList<RowInfo>();
+				RowInfo row = null;
+				do {
+					int rowId = cursor.getInt(0);
+					if (row == null || row.getId() != rowId) {
+						row = new RowInfo(rowId, cursor.getString(1), cursor.getInt(2), cursor.getInt(3));
+						rows.add(row);
+					}
+					if (!cursor.isNull(4)) {
+						try {
+							ItemInfo itemInfo = ItemsTable.createItem(cursor.getInt(4), cursor.getInt(5), cursor.getString(6), cursor.getString(7),
+									cursor.getString(8), cursor.getInt(9));
+							if (row.getItems() == null) {
+								row.setItems(new ArrayList<ItemInfo>());
+							}
+							row.getItems().add(itemInfo);
+						} catch (Exception e) {
+							Log.e(LOG_TAG, "getRowsWithItems: item " + cursor.getInt(4), e);
+						}
+					}
+				} while ((cursor.moveToNext()));
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getRowsWithItems failed", e);
+		} finally {
+			if (null != cursor)
+				cursor.close();
+			databaseManager.recordTiming("getRowsWithItems", start);
 		}
 		return rows;
 	}
 
+	/**
+	 * Get the largest row id in use.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static int getMaxId(Context context) {
+		int id = 0;
+		try {
+			SQLiteStatement statement = DatabaseManager.getInstance(context).getStatement(MAX_ID_SQL);
+			synchronized (statement) {
+				id = (int) statement.simpleQueryForLong();
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getMaxId failed", e);
+		}
+		return id;
+	}
+
 	public static void updateRow(Context context, int id, String title, int position, int type) throws Exception {
 		Log.d(LOG_TAG, "updateRow");
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.TITLE_COLUMN, title);
-			values.put(DatabaseHelper.POSITION_COLUMN, position);
-			values.put(DatabaseHelper.ROW_TYPE_COLUMN, type);
-			db.update(DatabaseHelper.ROWS_TABLE, values, DatabaseHelper.ID_COLUMN + "=?", new String[] { String.valueOf(id) });
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(UPDATE_ROW_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				DatabaseManager.bindString(statement, 1, title);
+				statement.bindLong(2, position);
+				statement.bindLong(3, type);
+				statement.bindLong(4, id);
+				statement.executeUpdateDelete();
+			}
 			Log.d(LOG_TAG, "updateRow: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "updateRow: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("updateRow", start);
 		}
 	}
 
 	public static void deleteRow(Context context, int id) throws Exception {
 		Log.d(LOG_TAG, "deleteRow");
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		try {
-			db.delete(DatabaseHelper.ROWS_TABLE, DatabaseHelper.ID_COLUMN + "=?", new String[] { String.valueOf(id) });
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(DELETE_ROW_SQL);
+			synchronized (statement) {
+				statement.clearBindings();
+				statement.bindLong(1, id);
+				statement.executeUpdateDelete();
+			}
 			Log.d(LOG_TAG, "deleteRow: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "deleteRow: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("deleteRow", start);
 		}
 	}
 
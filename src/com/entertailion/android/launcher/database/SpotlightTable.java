@@ -16,13 +16,17 @@
 package com.entertailion.android.launcher.database;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.util.Log;
 
@@ -40,73 +44,122 @@ import com.entertailion.android.launcher.spotlight.SpotlightInfo;
 public class SpotlightTable {
 	private static String LOG_TAG = "SpotlightTable";
 
+	private static final String INSERT_SPOTLIGHT_SQL = "INSERT INTO " + DatabaseHelper.SPOTLIGHT_TABLE + " (" + DatabaseHelper.TITLE_COLUMN + ", "
+			+ DatabaseHelper.URL_COLUMN + ", " + DatabaseHelper.LOGO_COLUMN + ", " + DatabaseHelper.ICON_COLUMN + ") VALUES (?, ?, ?, ?)";
+	private static final String UPDATE_SPOTLIGHT_SQL = "UPDATE " + DatabaseHelper.SPOTLIGHT_TABLE + " SET " + DatabaseHelper.LOGO_COLUMN + "=?, "
+			+ DatabaseHelper.ICON_COLUMN + "=? WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String DELETE_SPOTLIGHT_SQL = "DELETE FROM " + DatabaseHelper.SPOTLIGHT_TABLE + " WHERE " + DatabaseHelper.ID_COLUMN + "=?";
+	private static final String GET_SPOTLIGHTS_SQL = "SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.TITLE_COLUMN + ", "
+			+ DatabaseHelper.URL_COLUMN + ", " + DatabaseHelper.LOGO_COLUMN + ", " + DatabaseHelper.ICON_COLUMN + " FROM " + DatabaseHelper.SPOTLIGHT_TABLE;
+
 	public static long insertSpotlight(Context context, String title, String url, String logo, String icon) throws Exception {
 		Log.d(LOG_TAG, "insertSpotlight: " + title + ", " + url + ", " + logo + ", " + icon);
 
-		DatabaseHelper databaseHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = databaseHelper.getWritableDatabase();
-		db.beginTransaction();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
 		long id = DatabaseHelper.NO_ID;
 		try {
-			ContentValues values = new ContentValues();
-			values.put(DatabaseHelper.TITLE_COLUMN, title);
-			values.put(DatabaseHelper.URL_COLUMN, url);
-			values.put(DatabaseHelper.LOGO_COLUMN, logo);
-			values.put(DatabaseHelper.ICON_COLUMN, icon);
-			id = db.insertOrThrow(DatabaseHelper.SPOTLIGHT_TABLE, DatabaseHelper.TITLE_COLUMN, values);
-			db.setTransactionSuccessful();
+			SQLiteStatement statement = databaseManager.getStatement(INSERT_SPOTLIGHT_SQL);
+			synchronized (statement) {
+				id = bindSpotlight(statement, title, url, logo, icon).executeInsert();
+			}
 			Log.d(LOG_TAG, "insertSpotlight: success");
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "insertSpotlight: failed", e);
 			throw new Exception(e);
 		} finally {
-			db.endTransaction();
-			db.close();
+			databaseManager.recordTiming("insertSpotlight", start);
 		}
 		return id;
 	}
 
-	public static void insertSpotlights(Context context, List<SpotlightInfo> spotlights) throws Exception {
+	/**
+	 * Synchronize the table with the latest feed data. The rows are keyed by
+	 * title and URL: new web sites are inserted, changed web sites are
+	 * updated and the web sites no longer in the feed are deleted. The
+	 * unchanged rows are not touched.
+	 * 
+	 * @param context
+	 * @param spotlights
+	 * @return the icon files no longer used by the table
+	 * @throws Exception
+	 */
+	public static List<String> syncSpotlights(Context context, List<SpotlightInfo> spotlights) throws Exception {
+		List<String> unusedIcons = new ArrayList<String>();
 		if (spotlights != null) {
-			Log.d(LOG_TAG, "insertSpotlights: " + spotlights.size());
-
-			DatabaseHelper databaseHelper = new DatabaseHelper(context);
-			SQLiteDatabase db = databaseHelper.getWritableDatabase();
-			db.beginTransaction();
-			try {
-				// clear existing table first
-				db.delete(DatabaseHelper.SPOTLIGHT_TABLE, null, null);
-				// add new data
-				for (SpotlightInfo spotlight : spotlights) {
-					ContentValues values = new ContentValues();
-					values.put(DatabaseHelper.TITLE_COLUMN, spotlight.getTitle());
-					values.put(DatabaseHelper.URL_COLUMN, spotlight.getIntent().getDataString());
-					values.put(DatabaseHelper.LOGO_COLUMN, spotlight.getLogo());
-					values.put(DatabaseHelper.ICON_COLUMN, spotlight.getIcon());
-					db.insertOrThrow(DatabaseHelper.SPOTLIGHT_TABLE, DatabaseHelper.TITLE_COLUMN, values);
+			Log.d(LOG_TAG, "syncSpotlights: " + spotlights.size());
+
+			DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+			long start = databaseManager.startTiming();
+			SQLiteDatabase db = databaseManager.getDatabase();
+			SQLiteStatement statement = databaseManager.getStatement(INSERT_SPOTLIGHT_SQL);
+			// lock the statement before the transaction to keep the lock order
+			// consistent with insertSpotlight
+			synchronized (statement) {
+				db.beginTransaction();
+				try {
+					Map<String, SpotlightInfo> existing = new HashMap<String, SpotlightInfo>();
+					for (SpotlightInfo row : getRows(db)) {
+						if (existing.put(getKey(row), row) != null) {
+							// duplicate row
+							deleteSpotlight(databaseManager, row.getId());
+							unusedIcons.add(row.getIcon());
+						}
+					}
+					int inserted = 0;
+					int updated = 0;
+					for (SpotlightInfo spotlight : spotlights) {
+						SpotlightInfo row = existing.remove(getKey(spotlight));
+						if (row == null) {
+							bindSpotlight(statement, spotlight.getTitle(), spotlight.getIntent().getDataString(), spotlight.getLogo(), spotlight.getIcon())
+									.executeInsert();
+							inserted++;
+						} else if (!equals(row.getLogo(), spotlight.getLogo()) || !equals(row.getIcon(), spotlight.getIcon())) {
+							updateSpotlight(databaseManager, row.getId(), spotlight.getLogo(), spotlight.getIcon());
+							unusedIcons.add(row.getIcon());
+							updated++;
+						}
+					}
+					for (SpotlightInfo row : existing.values()) {
+						deleteSpotlight(databaseManager, row.getId());
+						unusedIcons.add(row.getIcon());
+					}
+					db.setTransactionSuccessful();
+					Log.d(LOG_TAG, "syncSpotlights: inserted=" + inserted + ", updated=" + updated + ", deleted=" + existing.size());
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "syncSpotlights: failed", e);
+					throw new Exception(e);
+				} finally {
+					db.endTransaction();
+					databaseManager.recordTiming("syncSpotlights", start);
+				}
+			}
+
+			// icons can be shared by several web sites
+			Set<String> icons = new HashSet<String>();
+			for (SpotlightInfo spotlight : spotlights) {
+				icons.add(spotlight.getIcon());
+			}
+			List<String> result = new ArrayList<String>();
+			for (String icon : unusedIcons) {
+				if (icon != null && !icons.contains(icon) && !result.contains(icon)) {
+					result.add(icon);
 				}
-				db.setTransactionSuccessful();
-				Log.d(LOG_TAG, "insertSpotlights: success");
-			} catch (Exception e) {
-				Log.e(LOG_TAG, "insertSpotlights: failed", e);
-				throw new Exception(e);
-			} finally {
-				db.endTransaction();
-				db.close();
 			}
+			unusedIcons = result;
 		}
-		Log.d(LOG_TAG, "end insertSpotlights");
+		return unusedIcons;
 	}
 
 	public static ArrayList<SpotlightInfo> getAllSpotlights(Context context) {
 		Log.d(LOG_TAG, "getAllSpotlights");
-		DatabaseHelper dbHelper = new DatabaseHelper(context);
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		DatabaseManager databaseManager = DatabaseManager.getInstance(context);
+		long start = databaseManager.startTiming();
+		SQLiteDatabase db = databaseManager.getDatabase();
 		Cursor cursor = null;
 		ArrayList<SpotlightInfo> spotlights = null;
 		try {
-			cursor = db.rawQuery("SELECT " + DatabaseHelper.ID_COLUMN + ", " + DatabaseHelper.TITLE_COLUMN + ", " + DatabaseHelper.URL_COLUMN + ", "
-					+ DatabaseHelper.LOGO_COLUMN + ", " + DatabaseHelper.ICON_COLUMN + " FROM " + DatabaseHelper.SPOTLIGHT_TABLE, null);
+			cursor = db.rawQuery(GET_SPOTLIGHTS_SQL, null);
 			if (cursor.moveToFirst()) {
 				spotlights = new ArrayList<SpotlightInfo>();
 				do {
@@ -120,10 +173,84 @@ public class SpotlightTable {
 		} finally {
 			if (null != cursor)
 				cursor.close();
-			db.close();
+			databaseManager.recordTiming("getAllSpotlights", start);
 		}
 		Log.d(LOG_TAG, "end getAllSpotlights");
 		return spotlights;
 	}
 
+	/**
+	 * Get the current rows with their ids.
+	 * 
+	 * @param db
+	 * @return
+	 */
+	private static List<SpotlightInfo> getRows(SQLiteDatabase db) {
+		List<SpotlightInfo> rows = new ArrayList<SpotlightInfo>();
+		Cursor cursor = db.rawQuery(GET_SPOTLIGHTS_SQL, null);
+		try {
+			while (cursor.moveToNext()) {
+				Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(cursor.getString(2)));
+				rows.add(new SpotlightInfo(cursor.getInt(0), cursor.getInt(0), cursor.getString(1), browserIntent, cursor.getString(3), cursor.getString(4)));
+			}
+		} finally {
+			cursor.close();
+		}
+		return rows;
+	}
+
+	private static void updateSpotlight(DatabaseManager databaseManager, int id, String logo, String icon) {
+		SQLiteStatement statement = databaseManager.getStatement(UPDATE_SPOTLIGHT_SQL);
+		synchronized (statement) {
+			statement.clearBindings();
+			DatabaseManager.bindString(statement, 1, logo);
+			DatabaseManager.bindString(statement, 2, icon);
+			statement.bindLong(3, id);
+			statement.executeUpdateDelete();
+		}
+	}
+
+	private static void deleteSpotlight(DatabaseManager databaseManager, int id) {
+		SQLiteStatement statement = databaseManager.getStatement(DELETE_SPOTLIGHT_SQL);
+		synchronized (statement) {
+			statement.clearBindings();
+			statement.bindLong(1, id);
+			statement.executeUpdateDelete();
+		}
+	}
+
+	/**
+	 * Get the key that identifies a web site across feed updates.
+	 * 
+	 * @param spotlight
+	 * @return
+	 */
+	private static String getKey(SpotlightInfo spotlight) {
+		return spotlight.getTitle() + "\n" + spotlight.getIntent().getDataString();
+	}
+
+	private static boolean equals(String value1, String value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+	/**
+	 * Bind the spotlight values to the compiled insert statement. Callers
+	 * must synchronize on the statement.
+	 * 
+	 * @param statement
+	 * @param title
+	 * @param url
+	 * @param logo
+	 * @param icon
+	 * @return
+	 */
+	private static SQLiteStatement bindSpotlight(SQLiteStatement statement, String title, String url, String logo, String icon) {
+		statement.clearBindings();
+		DatabaseManager.bindString(statement, 1, title);
+		DatabaseManager.bindString(statement, 2, url);
+		DatabaseManager.bindString(statement, 3, logo);
+		DatabaseManager.bindString(statement, 4, icon);
+		return statement;
+	}
+
 }
@@ -24,8 +24,8 @@ import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
 
 import com.entertailion.android.launcher.Launcher;
+import com.entertailion.android.launcher.LauncherModel;
 import com.entertailion.android.launcher.database.DatabaseHelper;
-import com.entertailion.android.launcher.database.ItemsTable;
 
 /**
  * Base data structure for all kinds of items that the user can configure for
@@ -103,11 +103,11 @@ public class ItemInfo {
 	}
 
 	public void persistInsert(Context context, int rowId, int position) throws Exception {
-		ItemsTable.insertItem(context, rowId, position, title, intent, null, DatabaseHelper.APP_TYPE);
+		LauncherModel.getInstance(context).insertItem(rowId, position, title, intent, null, DatabaseHelper.APP_TYPE);
 	}
 
 	public void persistUpdate(Context context, int rowId, int position) throws Exception {
-		ItemsTable.updateItem(context, id, rowId, position, title, intent, null, DatabaseHelper.APP_TYPE);
+		LauncherModel.getInstance(context).updateItem(id, rowId, position, title, intent, null, DatabaseHelper.APP_TYPE);
 	}
 
 	@Override
@@ -16,6 +16,9 @@
 
 package com.entertailion.android.launcher.row;
 
+import java.util.ArrayList;
+
+import com.entertailion.android.launcher.item.ItemInfo;
 
 /**
  * Data structure for each row of favorite items. There are at least a recent
@@ -33,7 +36,9 @@ public class RowInfo implements Comparable<RowInfo> {
 	private int position;
 	private String title;
 	private int type;
+	private int version;
 	boolean selected;
+	private ArrayList<ItemInfo> items;
 
 	public RowInfo() {
 		super();
@@ -78,6 +83,34 @@ public class RowInfo implements Comparable<RowInfo> {
 		this.type = type;
 	}
 
+	/**
+	 * Get the version of the items of the row. The version changes whenever
+	 * an item of the row is added, removed or updated.
+	 * 
+	 * @return
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * Get the items of the row, ordered by position. Only set for rows loaded
+	 * together with their items.
+	 * 
+	 * @return
+	 */
+	public ArrayList<ItemInfo> getItems() {
+		return items;
+	}
+
+	public void setItems(ArrayList<ItemInfo> items) {
+		this.items = items;
+	}
+
 	public boolean isSelected() {
 		return selected;
 	}
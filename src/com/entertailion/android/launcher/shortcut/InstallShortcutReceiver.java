@@ -35,11 +35,11 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.entertailion.android.launcher.Launcher;
+import com.entertailion.android.launcher.LauncherModel;
 import com.entertailion.android.launcher.R;
-import com.entertailion.android.launcher.database.ItemsTable;
-import com.entertailion.android.launcher.database.RowsTable;
 import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.row.RowInfo;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
 import com.entertailion.android.launcher.utils.FastBitmapDrawable;
 import com.entertailion.android.launcher.utils.Utils;
 
@@ -119,11 +119,15 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
 		boolean duplicate = data.getBooleanExtra(EXTRA_SHORTCUT_DUPLICATE, true);
 		boolean exists = false;
 		if (!duplicate) {
-			ArrayList<RowInfo> rows = RowsTable.getRows(context);
+			LauncherModel launcherModel = LauncherModel.getInstance(context);
+			ArrayList<RowInfo> rows = launcherModel.getRows();
 			if (rows != null) {
 				// Get the favorite items for each row
 				for (RowInfo row : rows) {
-					ArrayList<ItemInfo> items = ItemsTable.getItems(context, row.getId());
+					ArrayList<ItemInfo> items = launcherModel.getItems(row.getId());
+					if (items == null) {
+						continue;
+					}
 					for (ItemInfo info : items) {
 						// intent://channel/KDFW?deviceId=Logitech01&channelNumber=4#Intent;scheme=tv;action=android.intent.action.VIEW;launchFlags=0x14000000;component=com.google.tv.player/.PlayerActivity;end
 						// intent://www.google.com/#Intent;scheme=http;action=android.intent.action.VIEW;S.com.android.browser.application_id=-376878250306478472;end
@@ -159,8 +163,9 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
 
 				final String intentIcon = filename;
 				final String intentName = name;
-				new Thread(new Runnable() {
-					public void run() {
+				// repeated requests for the same shortcut are only handled once
+				BackgroundScheduler.getInstance(context).submit(LOG_TAG + ":" + intent.toUri(Intent.URI_INTENT_SCHEME), new BackgroundScheduler.Job() {
+					public boolean execute() {
 						String biggerIcon = null;
 						if (intent.getData() != null && intent.getDataString().startsWith("http")) {
 							biggerIcon = Utils.getWebSiteIcon(context, intent.getDataString());
@@ -172,8 +177,9 @@ public class InstallShortcutReceiver extends BroadcastReceiver {
 						launcherIntent.putExtra("name", intentName);
 						launcherIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
 						context.startActivity(launcherIntent);
+						return true;
 					}
-				}).start();
+				});
 			} catch (Exception e) {
 				Log.e(LOG_TAG, "onReceive", e);
 				Toast.makeText(context, context.getString(R.string.shortcut_not_installed, name), Toast.LENGTH_SHORT).show();
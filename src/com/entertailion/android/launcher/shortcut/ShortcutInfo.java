@@ -15,25 +15,20 @@
  */
 package com.entertailion.android.launcher.shortcut;
 
-import java.io.FileInputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Log;
 import android.widget.ImageView;
 
 import com.entertailion.android.launcher.Launcher;
+import com.entertailion.android.launcher.LauncherModel;
 import com.entertailion.android.launcher.R;
 import com.entertailion.android.launcher.database.DatabaseHelper;
-import com.entertailion.android.launcher.database.ItemsTable;
 import com.entertailion.android.launcher.item.ItemInfo;
 import com.entertailion.android.launcher.utils.Analytics;
-import com.entertailion.android.launcher.utils.FastBitmapDrawable;
-import com.entertailion.android.launcher.utils.Utils;
+import com.entertailion.android.launcher.utils.IconLoader;
 
 /**
  * Data structure for shortcuts like browser bookmarks or TV channels.
@@ -86,17 +81,10 @@ public class ShortcutInfo extends ItemInfo {
 		}
 
 		if (icon != null) {
-			try {
-				FileInputStream fis = imageView.getContext().openFileInput(icon);
-				Bitmap bitmap = BitmapFactory.decodeStream(fis);
-				fis.close();
-				bitmap = Utils.createBitmapThumbnail(bitmap, imageView.getContext());
-				setDrawable(new FastBitmapDrawable(bitmap));
-				imageView.setImageDrawable(getDrawable());
-				return;
-			} catch (Exception e) {
-				Log.d(LOG_TAG, "renderIcon", e);
-			}
+			// decoded in the background; the bitmap is owned by the shared
+			// cache so that the memory used by the icons is bounded
+			IconLoader.getInstance(imageView.getContext()).loadFileIcon(imageView, icon);
+			return;
 		}
 
 		super.renderIcon(imageView);
@@ -104,12 +92,12 @@ public class ShortcutInfo extends ItemInfo {
 
 	@Override
 	public void persistInsert(Context context, int rowId, int position) throws Exception {
-		ItemsTable.insertItem(context, rowId, position, getTitle(), getIntent(), icon, DatabaseHelper.SHORTCUT_TYPE);
+		LauncherModel.getInstance(context).insertItem(rowId, position, getTitle(), getIntent(), icon, DatabaseHelper.SHORTCUT_TYPE);
 	}
 
 	@Override
 	public void persistUpdate(Context context, int rowId, int position) throws Exception {
-		ItemsTable.updateItem(context, getId(), rowId, position, getTitle(), getIntent(), icon, DatabaseHelper.SHORTCUT_TYPE);
+		LauncherModel.getInstance(context).updateItem(getId(), rowId, position, getTitle(), getIntent(), icon, DatabaseHelper.SHORTCUT_TYPE);
 	}
 
 	@Override
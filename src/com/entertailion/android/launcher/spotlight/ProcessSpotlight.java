@@ -16,9 +16,9 @@
 package com.entertailion.android.launcher.spotlight;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,15 +26,19 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
+import android.content.SharedPreferences;
 import android.net.Uri;
 import android.util.Log;
 
+import com.entertailion.android.launcher.Launcher;
+import com.entertailion.android.launcher.LauncherModel;
 import com.entertailion.android.launcher.database.SpotlightTable;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+import com.entertailion.android.launcher.utils.BitmapCache;
 import com.entertailion.android.launcher.utils.HttpRequestHelper;
-import com.entertailion.android.launcher.utils.Utils;
 
 /**
  * Extract the Spotlight web app data from the Spotlight JSON feed.
@@ -42,8 +46,11 @@ import com.entertailion.android.launcher.utils.Utils;
  * @author leon_nicholls
  * 
  */
-public class ProcessSpotlight implements Runnable {
+public class ProcessSpotlight implements BackgroundScheduler.Job {
 	private static final String LOG_TAG = "ProcessSpotlight";
+
+	public static final String JOB_KEY = "spotlight";
+	private static final String FEED_HASH = "spotlight.feed.hash";
 	public static String SPOTLIGHT_FEED_URL = "http://www.google.com/tv/static/js/spotlight_sites.js"; // https://www.google.com/tv/spotlight-gallery.html
 
 	private Context context = null;
@@ -63,9 +70,14 @@ public class ProcessSpotlight implements Runnable {
 		InputStream stream = new HttpRequestHelper().getHttpStream(SPOTLIGHT_FEED_URL);
 		if (stream != null) {
 			BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-			String line;
-			while ((line = reader.readLine()) != null) {
-				builder.append(line);
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					builder.append(line);
+				}
+			} finally {
+				// release the connection
+				reader.close();
 			}
 			String result = builder.toString();
 			if (result.startsWith("var sites = ")) {
@@ -100,18 +112,58 @@ public class ProcessSpotlight implements Runnable {
 	}
 
 	/**
-	 * Process the spotlight JSON data
+	 * Process the spotlight JSON data without downloading the icons of the web
+	 * sites. Safe to call on the UI thread; the icons are downloaded by the
+	 * scheduled spotlight job.
 	 * 
 	 * @param jsonFeed
 	 * @return
 	 * @throws JSONException
 	 */
 	public static List<SpotlightInfo> process(Context context, String jsonFeed) throws JSONException {
+		return process(context, jsonFeed, false, null);
+	}
+
+	/**
+	 * Process the spotlight JSON data. The icons of the web sites are
+	 * downloaded in parallel and the result is only returned once all the
+	 * icons are resolved.
+	 * 
+	 * @param context
+	 * @param jsonFeed
+	 * @param progressListener
+	 *            optional listener for the icon downloads
+	 * @return
+	 * @throws JSONException
+	 */
+	public static List<SpotlightInfo> process(Context context, String jsonFeed, SpotlightIconFetcher.ProgressListener progressListener)
+			throws JSONException {
+		return process(context, jsonFeed, true, progressListener);
+	}
+
+	private static List<SpotlightInfo> process(Context context, String jsonFeed, boolean fetchIcons,
+			SpotlightIconFetcher.ProgressListener progressListener) throws JSONException {
 		JSONObject jsonObj = new JSONObject(jsonFeed);
 		List<SpotlightInfo> result = null;
 		if (null != jsonObj) {
 			JSONArray models = (JSONArray) jsonObj.get("models");
 			if (null != models && models.length() > 0) {
+				List<SpotlightIconFetcher.Request> requests = new ArrayList<SpotlightIconFetcher.Request>();
+				SpotlightIconFetcher.Request[] icons = new SpotlightIconFetcher.Request[models.length()];
+				for (int i = 0; i < models.length(); i++) {
+					JSONObject model = (JSONObject) models.get(i);
+					String title = model.getString("title");
+					if (null == SpotlightInfo.spotlightIconMap.get(title.toLowerCase())) {
+						// icon file path
+						icons[i] = new SpotlightIconFetcher.Request(title, model.getString("url"), model.getString("hdpiLogo"), "spotlight_"
+								+ sanitizeName(title) + ".png");
+						requests.add(icons[i]);
+					}
+				}
+				if (fetchIcons) {
+					new SpotlightIconFetcher(context, progressListener).fetch(requests);
+				}
+
 				result = new ArrayList<SpotlightInfo>();
 				int position = 0;
 				for (int i = 0; i < models.length(); i++) {
@@ -119,35 +171,7 @@ public class ProcessSpotlight implements Runnable {
 					String title = model.getString("title");
 					String url = model.getString("url");
 					String logo = model.getString("hdpiLogo");
-					String icon = null;
-					if (null == SpotlightInfo.spotlightIconMap.get(title.toLowerCase())) {
-						// icon file path
-						try {
-							icon = "spotlight_" + sanitizeName(title) + ".png";
-							File file = context.getFileStreamPath(icon);
-							if (!file.exists()) {
-								Uri uri = Uri.parse(url);
-								String alternateLogo = Utils.getWebSiteIcon(context, uri.getScheme()+"://"+uri.getHost());
-								if (alternateLogo!=null && alternateLogo.trim().length()>0) {
-									icon = alternateLogo;
-								} else {
-									// create a file-based icon from original
-									// 360x203
-									Bitmap bitmap = Utils.getBitmapFromURL(logo);
-									if (bitmap!=null) {
-										bitmap = Utils.crop(bitmap, 30, 30);
-										Utils.saveToFile(context, bitmap, 100, 100, icon);
-										bitmap.recycle();
-										bitmap = null;
-									} else {
-										icon = null;
-									}
-								}
-							}
-						} catch (Exception e) {
-							Log.e(LOG_TAG, "create spotlight icon", e);
-						}
-					}
+					String icon = icons[i] != null ? icons[i].getIcon() : null;
 					Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
 					result.add(new SpotlightInfo(position++, title, browserIntent, logo, icon));
 				}
@@ -156,16 +180,79 @@ public class ProcessSpotlight implements Runnable {
 		return result;
 	}
 
-	public static void persistFeed(Context context, List<SpotlightInfo> spotlights) {
+	/**
+	 * Synchronize the spotlight table with the feed data and delete the icon
+	 * files of the web sites that were removed.
+	 * 
+	 * @param context
+	 * @param spotlights
+	 * @return true if the data was persisted
+	 */
+	public static boolean persistFeed(Context context, List<SpotlightInfo> spotlights) {
 		try {
-			SpotlightTable.insertSpotlights(context, spotlights);
+			List<String> unusedIcons = SpotlightTable.syncSpotlights(context, spotlights);
+			deleteUnusedIcons(context, unusedIcons);
+			return true;
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "persistFeed", e);
 		}
+		return false;
+	}
+
+	/**
+	 * Delete the icon files that are not used by any item in the rows.
+	 * 
+	 * @param context
+	 * @param icons
+	 */
+	private static void deleteUnusedIcons(Context context, List<String> icons) {
+		for (String icon : icons) {
+			if (!LauncherModel.getInstance(context).isIconUsed(icon)) {
+				Log.d(LOG_TAG, "delete icon: " + icon);
+				context.deleteFile(icon);
+				BitmapCache.getInstance(context).remove(icon);
+			}
+		}
+	}
+
+	/**
+	 * Check if every web site has an icon.
+	 * 
+	 * @param spotlights
+	 * @return false if an icon could not be downloaded
+	 */
+	private static boolean hasAllIcons(List<SpotlightInfo> spotlights) {
+		for (SpotlightInfo spotlight : spotlights) {
+			if (spotlight.getIcon() == null && null == SpotlightInfo.spotlightIconMap.get(spotlight.getTitle().toLowerCase())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get a hash of the feed data to detect changes.
+	 * 
+	 * @param jsonFeed
+	 * @return
+	 */
+	private static String getHash(String jsonFeed) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(jsonFeed.getBytes("UTF-8"));
+			StringBuilder builder = new StringBuilder();
+			for (byte b : hash) {
+				builder.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return builder.toString();
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "getHash", e);
+		}
+		return null;
 	}
 
 	@Override
-	public void run() {
+	public boolean execute() {
 		String jsonFeed = null;
 		try {
 			// attempt to get feed from internet
@@ -173,17 +260,37 @@ public class ProcessSpotlight implements Runnable {
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "getFeed", e);
 		}
+		boolean success = false;
 		try {
 			Log.i(LOG_TAG, "Begin fetching launcher spotlight data" + System.currentTimeMillis() + "]");
 			if (null != jsonFeed && jsonFeed.trim().length() > 0) {
-				List<SpotlightInfo> spotlights = process(context, jsonFeed);
-				// persist the latest data
-				persistFeed(context, spotlights);
+				// skip the processing if the feed has not changed
+				SharedPreferences settings = context.getSharedPreferences(Launcher.PREFERENCES_NAME, Activity.MODE_PRIVATE);
+				String hash = getHash(jsonFeed);
+				if (hash != null && hash.equals(settings.getString(FEED_HASH, null))) {
+					Log.i(LOG_TAG, "Spotlight feed has not changed");
+					success = true;
+				} else {
+					List<SpotlightInfo> spotlights = process(context, jsonFeed, new SpotlightIconFetcher.ProgressListener() {
+						public void onProgress(int completed, int total) {
+							Log.d(LOG_TAG, "spotlight icons: " + completed + "/" + total);
+						}
+					});
+					// persist the latest data in a single transaction
+					success = spotlights != null && persistFeed(context, spotlights);
+					if (success && hasAllIcons(spotlights)) {
+						// missing icons are retried with the next update
+						SharedPreferences.Editor editor = settings.edit();
+						editor.putString(FEED_HASH, hash);
+						editor.commit();
+					}
+				}
 			}
 			Log.i(LOG_TAG, "End fetching launcher spotlight data" + System.currentTimeMillis() + "]");
 		} catch (Exception e) {
-			Log.e(LOG_TAG, "run", e);
+			Log.e(LOG_TAG, "execute", e);
 		}
+		return success;
 	}
 
 	/**
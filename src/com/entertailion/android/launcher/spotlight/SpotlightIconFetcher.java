@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.spotlight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.entertailion.android.launcher.utils.Utils;
+
+/**
+ * Download the icons for the spotlight web sites in parallel. The number of
+ * downloads is bounded by a small pool of worker threads and by a limit per
+ * host, so that a feed with many sites on the same host does not flood it.
+ * Failed downloads are retried with an exponential backoff.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class SpotlightIconFetcher {
+	private static final String LOG_TAG = "SpotlightIconFetcher";
+
+	private static final int FETCH_THREADS = 4;
+	private static final int MAX_REQUESTS_PER_HOST = 2;
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long INITIAL_BACKOFF = 1000;
+
+	/**
+	 * Callback for the progress of the downloads. Called on the worker
+	 * threads.
+	 */
+	public interface ProgressListener {
+		void onProgress(int completed, int total);
+	}
+
+	/**
+	 * Icon to download for a spotlight web site.
+	 */
+	public static class Request {
+		private final String title;
+		private final String url;
+		private final String logo;
+		private final String fileName;
+		private volatile String icon;
+
+		/**
+		 * @param title
+		 * @param url
+		 *            the web site
+		 * @param logo
+		 *            the logo image in the feed
+		 * @param fileName
+		 *            the file for the cropped logo
+		 */
+		public Request(String title, String url, String logo, String fileName) {
+			this.title = title;
+			this.url = url;
+			this.logo = logo;
+			this.fileName = fileName;
+		}
+
+		/**
+		 * Get the icon file of the web site.
+		 * 
+		 * @return the file name or null if there is no icon
+		 */
+		public String getIcon() {
+			return icon;
+		}
+	}
+
+	private Context context;
+	private ProgressListener progressListener;
+	private ConcurrentHashMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+
+	/**
+	 * @param context
+	 * @param progressListener
+	 *            optional listener for the progress
+	 */
+	public SpotlightIconFetcher(Context context, ProgressListener progressListener) {
+		this.context = context;
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Download the icons and wait until they are all resolved.
+	 * 
+	 * @param requests
+	 */
+	public void fetch(List<Request> requests) {
+		if (requests.isEmpty()) {
+			return;
+		}
+		final int total = requests.size();
+		final AtomicInteger completed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(FETCH_THREADS, total), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return new Thread(new Runnable() {
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, LOG_TAG);
+			}
+		});
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final Request request : requests) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						try {
+							request.icon = fetchIcon(request);
+						} finally {
+							if (progressListener != null) {
+								progressListener.onProgress(completed.incrementAndGet(), total);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (Exception e) {
+					Log.e(LOG_TAG, "fetch", e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Get the icon for a web site, retrying with a backoff if it cannot be
+	 * downloaded.
+	 * 
+	 * @param request
+	 * @return the icon file name or null
+	 * @throws InterruptedException
+	 */
+	private String fetchIcon(Request request) throws InterruptedException {
+		if (context.getFileStreamPath(request.fileName).exists()) {
+			return request.fileName;
+		}
+		long backoff = INITIAL_BACKOFF;
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			try {
+				String icon = downloadIcon(request);
+				if (icon != null) {
+					return icon;
+				}
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				Log.e(LOG_TAG, "create spotlight icon: " + request.title, e);
+			}
+			if (attempt < MAX_ATTEMPTS) {
+				Log.d(LOG_TAG, "retry " + request.title + " in " + backoff + "ms");
+				Thread.sleep(backoff);
+				backoff *= 2;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Download the icon advertised by the web site or else crop the feed logo.
+	 * 
+	 * @param request
+	 * @return the icon file name or null if the icon could not be downloaded
+	 * @throws Exception
+	 */
+	private String downloadIcon(Request request) throws Exception {
+		Uri uri = Uri.parse(request.url);
+		String site = uri.getScheme() + "://" + uri.getHost();
+		String alternateLogo;
+		Semaphore permits = acquire(uri.getHost());
+		try {
+			alternateLogo = Utils.getWebSiteIcon(context, site);
+		} finally {
+			permits.release();
+		}
+		if (alternateLogo != null && alternateLogo.trim().length() > 0) {
+			return alternateLogo;
+		}
+
+		if (request.logo == null) {
+			return null;
+		}
+		// create a file-based icon from original
+		// 360x203
+		Bitmap bitmap;
+		permits = acquire(Uri.parse(request.logo).getHost());
+		try {
+			bitmap = Utils.getBitmapFromURL(request.logo);
+		} finally {
+			permits.release();
+		}
+		if (bitmap == null) {
+			return null;
+		}
+		Bitmap cropped = Utils.crop(bitmap, 30, 30);
+		bitmap.recycle();
+		try {
+			Utils.saveToFile(context, cropped, 100, 100, request.fileName);
+		} finally {
+			cropped.recycle();
+		}
+		return request.fileName;
+	}
+
+	/**
+	 * Wait for a free request slot for a host.
+	 * 
+	 * @param host
+	 * @return the semaphore to release when the request is done
+	 * @throws InterruptedException
+	 */
+	private Semaphore acquire(String host) throws InterruptedException {
+		if (host == null) {
+			host = "";
+		}
+		Semaphore permits = hosts.get(host);
+		if (permits == null) {
+			permits = new Semaphore(MAX_REQUESTS_PER_HOST);
+			Semaphore existing = hosts.putIfAbsent(host, permits);
+			if (existing != null) {
+				permits = existing;
+			}
+		}
+		permits.acquire();
+		return permits;
+	}
+
+}
@@ -20,6 +20,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+
 /**
  * Receiver to download the spotlight data; Invoked by AlarmManager from
  * LauncherService.
@@ -38,7 +40,7 @@ public class SpotlightReceiver extends BroadcastReceiver {
 	@Override
 	public void onReceive(Context context, Intent arg1) {
 		Log.d(LOG_CAT, "onReceive");
-		new Thread(new ProcessSpotlight(context)).start();
+		BackgroundScheduler.getInstance(context).submit(ProcessSpotlight.JOB_KEY, new ProcessSpotlight(context));
 	}
 
 }
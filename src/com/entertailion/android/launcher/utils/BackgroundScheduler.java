@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Process;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+
+/**
+ * Run the background jobs of the app on a small bounded pool of threads.
+ * Jobs are identified by a key and a job that is already queued or running
+ * is not started again. Failed jobs are retried with an exponential backoff.
+ * The recent runs are kept in a history for diagnostics.
+ * 
+ * The periodic jobs are triggered by inexact alarms that do not wake up the
+ * device, so the system can batch them together.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class BackgroundScheduler {
+	private static final String LOG_TAG = "BackgroundScheduler";
+
+	private static final int THREADS = 2;
+	private static final int MAX_RETRIES = 3;
+	private static final long INITIAL_BACKOFF = 30 * 1000;
+	private static final long MAX_BACKOFF = 10 * 60 * 1000;
+	private static final int HISTORY_SIZE = 32;
+
+	/**
+	 * Background job.
+	 */
+	public interface Job {
+		/**
+		 * Do the work of the job on a background thread.
+		 * 
+		 * @return true if the job succeeded; false to retry it later
+		 */
+		boolean execute();
+	}
+
+	/**
+	 * Record of a job run.
+	 */
+	public static class JobRun {
+		private final String key;
+		private final long startTime;
+		private final long duration;
+		private final boolean success;
+
+		public JobRun(String key, long startTime, long duration, boolean success) {
+			this.key = key;
+			this.startTime = startTime;
+			this.duration = duration;
+			this.success = success;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getStartTime() {
+			return startTime;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public boolean isSuccess() {
+			return success;
+		}
+
+		@Override
+		public String toString() {
+			return key + ": " + (success ? "success" : "failed") + " in " + duration + "ms";
+		}
+	}
+
+	private Context context;
+	private ScheduledThreadPoolExecutor executor;
+	// jobs queued or running by key
+	private ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+	private LinkedList<JobRun> history = new LinkedList<JobRun>();
+
+	/**
+	 * @param context
+	 */
+	public BackgroundScheduler(Context context) {
+		this.context = context.getApplicationContext();
+		executor = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return new Thread(new Runnable() {
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, LOG_TAG);
+			}
+		});
+	}
+
+	/**
+	 * Get the shared scheduler owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static BackgroundScheduler getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getBackgroundScheduler();
+	}
+
+	/**
+	 * Run a job in the background unless a job with the same key is already
+	 * queued or running.
+	 * 
+	 * @param key
+	 * @param job
+	 * @return true if the job was queued
+	 */
+	public boolean submit(String key, Job job) {
+		if (jobs.putIfAbsent(key, job) != null) {
+			Log.d(LOG_TAG, "already queued: " + key);
+			return false;
+		}
+		schedule(key, job, 0, 0);
+		return true;
+	}
+
+	/**
+	 * Check if a job is queued or running.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public boolean isPending(String key) {
+		return jobs.containsKey(key);
+	}
+
+	private void schedule(final String key, final Job job, final int attempt, long delay) {
+		executor.schedule(new Runnable() {
+			public void run() {
+				long start = System.currentTimeMillis();
+				boolean success = false;
+				try {
+					success = job.execute();
+				} catch (Throwable e) {
+					Log.e(LOG_TAG, "job failed: " + key, e);
+				}
+				JobRun run = new JobRun(key, start, System.currentTimeMillis() - start, success);
+				Log.d(LOG_TAG, run.toString());
+				addHistory(run);
+				if (!success && attempt < MAX_RETRIES) {
+					long backoff = Math.min(INITIAL_BACKOFF << attempt, MAX_BACKOFF);
+					Log.d(LOG_TAG, "retry " + key + " in " + backoff + "ms");
+					schedule(key, job, attempt + 1, backoff);
+				} else {
+					jobs.remove(key);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Trigger a receiver periodically with an inexact alarm. The alarm does
+	 * not wake up the device and the system batches it with the other
+	 * alarms; the first alarm is triggered immediately.
+	 * 
+	 * @param receiver
+	 * @param interval
+	 *            one of the AlarmManager intervals so that the alarms can be
+	 *            batched
+	 */
+	public void scheduleRepeating(Class<? extends BroadcastReceiver> receiver, long interval) {
+		AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, new Intent(context, receiver), 0);
+		alarmManager.setInexactRepeating(AlarmManager.RTC, System.currentTimeMillis(), interval, pendingIntent);
+	}
+
+	/**
+	 * Stop triggering a receiver.
+	 * 
+	 * @param receiver
+	 */
+	public void cancelRepeating(Class<? extends BroadcastReceiver> receiver) {
+		AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		alarmManager.cancel(PendingIntent.getBroadcast(context, 0, new Intent(context, receiver), 0));
+	}
+
+	private void addHistory(JobRun run) {
+		synchronized (history) {
+			history.add(run);
+			if (history.size() > HISTORY_SIZE) {
+				history.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Get the recent job runs, oldest first.
+	 * 
+	 * @return
+	 */
+	public List<JobRun> getHistory() {
+		synchronized (history) {
+			return new ArrayList<JobRun>(history);
+		}
+	}
+
+	/**
+	 * Get the recent runs of a job, oldest first.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public List<JobRun> getHistory(String key) {
+		List<JobRun> runs = new ArrayList<JobRun>();
+		for (JobRun run : getHistory()) {
+			if (run.getKey().equals(key)) {
+				runs.add(run);
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Log the recent job runs.
+	 */
+	public void logHistory() {
+		for (JobRun run : getHistory()) {
+			Log.d(LOG_TAG, run.toString());
+		}
+	}
+
+}
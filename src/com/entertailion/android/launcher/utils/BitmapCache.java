@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.R;
+
+/**
+ * Memory cache for the item icon bitmaps. The cache is bounded by the number
+ * of bytes used by the bitmaps and the least recently used bitmaps are
+ * evicted first. The budget is configured with the bitmap_cache_size
+ * resource; a value of 0 uses 1/8 of the memory available to the app.
+ * 
+ * Evicted bitmaps are not recycled since they could still be displayed by a
+ * view.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class BitmapCache {
+	private static final String LOG_TAG = "BitmapCache";
+
+	private static final int BYTES_PER_KB = 1024;
+
+	private LruCache<String, Bitmap> cache;
+
+	/**
+	 * @param context
+	 */
+	public BitmapCache(Context context) {
+		int budget = context.getResources().getInteger(R.integer.bitmap_cache_size) * BYTES_PER_KB;
+		if (budget <= 0) {
+			ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+			budget = activityManager.getMemoryClass() * BYTES_PER_KB * BYTES_PER_KB / 8;
+		}
+		Log.d(LOG_TAG, "budget=" + budget);
+		cache = new LruCache<String, Bitmap>(budget) {
+			@Override
+			protected int sizeOf(String key, Bitmap bitmap) {
+				return bitmap.getByteCount();
+			}
+		};
+	}
+
+	/**
+	 * Get the shared bitmap cache owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static BitmapCache getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getBitmapCache();
+	}
+
+	/**
+	 * Get a cached bitmap.
+	 * 
+	 * @param key
+	 * @return the bitmap or null if not cached
+	 */
+	public Bitmap get(String key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * Cache a bitmap.
+	 * 
+	 * @param key
+	 * @param bitmap
+	 */
+	public void put(String key, Bitmap bitmap) {
+		if (key != null && bitmap != null) {
+			cache.put(key, bitmap);
+		}
+	}
+
+	/**
+	 * Remove a cached bitmap.
+	 * 
+	 * @param key
+	 */
+	public void remove(String key) {
+		cache.remove(key);
+	}
+
+	/**
+	 * Remove all the cached bitmaps.
+	 */
+	public void evictAll() {
+		cache.evictAll();
+	}
+
+	/**
+	 * Number of bytes used by the cached bitmaps.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Maximum number of bytes for the cached bitmaps.
+	 * 
+	 * @return
+	 */
+	public int maxSize() {
+		return cache.maxSize();
+	}
+
+	/**
+	 * Number of times a cached bitmap was found.
+	 * 
+	 * @return
+	 */
+	public int getHitCount() {
+		return cache.hitCount();
+	}
+
+	/**
+	 * Number of times a bitmap was not found.
+	 * 
+	 * @return
+	 */
+	public int getMissCount() {
+		return cache.missCount();
+	}
+
+	/**
+	 * Number of bitmaps evicted to stay within the budget.
+	 * 
+	 * @return
+	 */
+	public int getEvictionCount() {
+		return cache.evictionCount();
+	}
+
+	/**
+	 * Log the cache counters.
+	 */
+	public void logStats() {
+		Log.d(LOG_TAG, "size=" + size() + ", maxSize=" + maxSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+				+ getEvictionCount());
+	}
+
+}
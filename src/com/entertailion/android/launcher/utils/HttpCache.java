@@ -0,0 +1,589 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Disk cache for HTTP resources. Each cached body is stored with the response
+ * validators (ETag, Last-Modified), the Cache-Control max-age and the time it
+ * was fetched. A fresh copy is served without using the network; a stale copy
+ * is revalidated with a conditional request so that an unchanged resource
+ * costs a 304 response instead of the whole document. If the network is not
+ * available the last cached copy is used.
+ * 
+ * Documents that are parsed as they are downloaded can be opened as a stream
+ * with {@link #openStream(Context, String, boolean)}; the body is written to
+ * the cache while it is read.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class HttpCache {
+	private static final String LOG_TAG = "HttpCache";
+
+	private static final String CACHE_PREFIX = "cache.";
+	private static final String META_EXTENSION = ".meta";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last-modified";
+	private static final String MAX_AGE = "max-age";
+	private static final String FETCH_TIME = "fetch-time";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// downloads in progress by URL
+	private static final ConcurrentHashMap<String, FutureTask<String>> requests = new ConcurrentHashMap<String, FutureTask<String>>();
+
+	/**
+	 * Get the data for a URL.
+	 * 
+	 * @param context
+	 * @param url
+	 * @param refresh
+	 *            false to use any cached copy; true to revalidate the cached
+	 *            copy once it is no longer fresh
+	 * @return the data or null if it could not be downloaded and is not cached
+	 */
+	public static String getData(final Context context, final String url, final boolean refresh) {
+		Log.d(LOG_TAG, "getData: " + url);
+		File bodyFile = getBodyFile(context, url);
+		if (!refresh && bodyFile.exists()) {
+			// the body is replaced atomically so it can be read without a lock
+			return readBody(bodyFile);
+		}
+
+		// coalesce the requests for the same URL into a single download;
+		// requests for different URLs proceed in parallel
+		FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+			public String call() throws Exception {
+				return loadData(context, url, refresh);
+			}
+		});
+		FutureTask<String> inFlight = requests.putIfAbsent(url, task);
+		if (inFlight == null) {
+			try {
+				task.run();
+			} finally {
+				requests.remove(url, task);
+			}
+			inFlight = task;
+		} else {
+			Log.d(LOG_TAG, "waiting for download: " + url);
+		}
+		try {
+			return inFlight.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.e(LOG_TAG, "getData: " + url, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Open a stream for the data of a URL. A downloaded body is written to the
+	 * cache while the caller reads it, so the caller can parse the document as
+	 * it arrives instead of holding the whole document in memory. The cached
+	 * copy is only replaced if the whole body is downloaded.
+	 * 
+	 * @param context
+	 * @param url
+	 * @param refresh
+	 *            false to use any cached copy; true to revalidate the cached
+	 *            copy once it is no longer fresh
+	 * @return the stream or null if the data could not be downloaded and is
+	 *         not cached; the caller must close the stream
+	 */
+	public static InputStream openStream(Context context, String url, boolean refresh) {
+		Log.d(LOG_TAG, "openStream: " + url);
+		File bodyFile = getBodyFile(context, url);
+		File metaFile = getMetaFile(context, url);
+		Properties meta = null;
+		if (bodyFile.exists()) {
+			meta = readMeta(metaFile);
+			if (!refresh || isFresh(meta)) {
+				return openFile(bodyFile);
+			}
+		}
+
+		HttpResponse response = null;
+		try {
+			response = HttpRequestHelper.execute(createRequest(url, meta));
+			int responseCode = response.getStatusLine().getStatusCode();
+			if (responseCode == HttpStatus.SC_NOT_MODIFIED && meta != null) {
+				Log.d(LOG_TAG, "not modified: " + url);
+				HttpRequestHelper.consume(response);
+				updateMeta(metaFile, meta, response);
+				return openFile(bodyFile);
+			}
+			if (responseCode == HttpStatus.SC_OK && response.getEntity() != null) {
+				// unique temporary file since the URL could be downloaded by
+				// getData at the same time
+				File tempFile = File.createTempFile(bodyFile.getName(), TEMP_EXTENSION, bodyFile.getParentFile());
+				return new CachingInputStream(response.getEntity().getContent(), tempFile, bodyFile, metaFile, createMeta(response));
+			}
+			Log.d(LOG_TAG, "response " + responseCode + ": " + url);
+			HttpRequestHelper.consume(response);
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "openStream: " + url, e);
+			HttpRequestHelper.consume(response);
+		}
+		if (meta != null) {
+			// serve the stale copy
+			Log.d(LOG_TAG, "using stale copy: " + url);
+			return openFile(bodyFile);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the data for a URL from the cache or the network. Only one thread
+	 * at a time loads a particular URL.
+	 * 
+	 * @param context
+	 * @param url
+	 * @param refresh
+	 * @return
+	 */
+	private static String loadData(Context context, String url, boolean refresh) {
+		File bodyFile = getBodyFile(context, url);
+		File metaFile = getMetaFile(context, url);
+		boolean exists = bodyFile.exists();
+
+		if (exists) {
+			Properties meta = readMeta(metaFile);
+			if (!refresh || isFresh(meta)) {
+				return readBody(bodyFile);
+			}
+			if (!fetch(url, bodyFile, metaFile, meta)) {
+				// serve the stale copy
+				Log.d(LOG_TAG, "using stale copy: " + url);
+			}
+		} else if (!fetch(url, bodyFile, metaFile, null)) {
+			return null;
+		}
+		return readBody(bodyFile);
+	}
+
+	/**
+	 * Download a resource into the cache. If there is a cached copy the
+	 * request is conditional on the cached validators.
+	 * 
+	 * @param url
+	 * @param bodyFile
+	 * @param metaFile
+	 * @param meta
+	 *            the metadata of the cached copy or null if there is no copy
+	 * @return true if the cached copy is valid
+	 */
+	private static boolean fetch(String url, File bodyFile, File metaFile, Properties meta) {
+		HttpResponse response = null;
+		try {
+			response = HttpRequestHelper.execute(createRequest(url, meta));
+			int responseCode = response.getStatusLine().getStatusCode();
+			if (responseCode == HttpStatus.SC_NOT_MODIFIED && meta != null) {
+				Log.d(LOG_TAG, "not modified: " + url);
+				updateMeta(metaFile, meta, response);
+				return true;
+			}
+			if (responseCode != HttpStatus.SC_OK || response.getEntity() == null) {
+				Log.d(LOG_TAG, "response " + responseCode + ": " + url);
+				return false;
+			}
+
+			File tempFile = new File(bodyFile.getPath() + TEMP_EXTENSION);
+			InputStream in = response.getEntity().getContent();
+			long length = 0;
+			try {
+				length = copy(in, tempFile);
+			} finally {
+				in.close();
+			}
+			if (length == 0 || !tempFile.renameTo(bodyFile)) {
+				tempFile.delete();
+				return false;
+			}
+
+			writeMeta(metaFile, createMeta(response));
+			return true;
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "fetch: " + url, e);
+		} finally {
+			// release the connection back to the pool
+			HttpRequestHelper.consume(response);
+		}
+		return false;
+	}
+
+	/**
+	 * Create a request for a URL. If there is a cached copy the request is
+	 * conditional on the cached validators.
+	 * 
+	 * @param url
+	 * @param meta
+	 *            the metadata of the cached copy or null if there is no copy
+	 * @return
+	 */
+	private static HttpGet createRequest(String url, Properties meta) {
+		HttpGet request = new HttpGet(url);
+		if (meta != null) {
+			if (meta.getProperty(ETAG) != null) {
+				request.setHeader("If-None-Match", meta.getProperty(ETAG));
+			}
+			if (meta.getProperty(LAST_MODIFIED) != null) {
+				request.setHeader("If-Modified-Since", meta.getProperty(LAST_MODIFIED));
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * Create the cache metadata for a new body.
+	 * 
+	 * @param response
+	 * @return
+	 */
+	private static Properties createMeta(HttpResponse response) {
+		Properties meta = new Properties();
+		if (getHeader(response, "ETag") != null) {
+			meta.setProperty(ETAG, getHeader(response, "ETag"));
+		}
+		if (getHeader(response, "Last-Modified") != null) {
+			meta.setProperty(LAST_MODIFIED, getHeader(response, "Last-Modified"));
+		}
+		meta.setProperty(MAX_AGE, String.valueOf(getMaxAge(getHeader(response, "Cache-Control"))));
+		meta.setProperty(FETCH_TIME, String.valueOf(System.currentTimeMillis()));
+		return meta;
+	}
+
+	/**
+	 * Update the freshness of a cached copy that was not modified. The
+	 * validators are unchanged.
+	 * 
+	 * @param metaFile
+	 * @param meta
+	 * @param response
+	 */
+	private static void updateMeta(File metaFile, Properties meta, HttpResponse response) {
+		meta.setProperty(MAX_AGE, String.valueOf(getMaxAge(getHeader(response, "Cache-Control"))));
+		meta.setProperty(FETCH_TIME, String.valueOf(System.currentTimeMillis()));
+		writeMeta(metaFile, meta);
+	}
+
+	/**
+	 * Get the value of a response header.
+	 * 
+	 * @param response
+	 * @param name
+	 * @return the value or null if the header is missing
+	 */
+	private static String getHeader(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+	/**
+	 * Check if a cached copy can be used without revalidation.
+	 * 
+	 * @param meta
+	 * @return
+	 */
+	private static boolean isFresh(Properties meta) {
+		try {
+			long maxAge = Long.parseLong(meta.getProperty(MAX_AGE, "0"));
+			long fetchTime = Long.parseLong(meta.getProperty(FETCH_TIME, "0"));
+			long age = System.currentTimeMillis() - fetchTime;
+			return age >= 0 && age < maxAge * 1000;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get the max-age in seconds from a Cache-Control header.
+	 * 
+	 * @param cacheControl
+	 * @return the max-age or 0 if the response must be revalidated
+	 */
+	private static long getMaxAge(String cacheControl) {
+		long maxAge = 0;
+		if (cacheControl != null) {
+			for (String directive : cacheControl.split(",")) {
+				directive = directive.trim().toLowerCase();
+				if (directive.equals("no-cache") || directive.equals("no-store") || directive.equals("must-revalidate")) {
+					return 0;
+				}
+				if (directive.startsWith(MAX_AGE + "=")) {
+					try {
+						maxAge = Long.parseLong(directive.substring(MAX_AGE.length() + 1).replace("\"", ""));
+					} catch (NumberFormatException e) {
+						Log.d(LOG_TAG, "invalid max-age: " + cacheControl);
+					}
+				}
+			}
+		}
+		return Math.max(0, maxAge);
+	}
+
+	/**
+	 * Get the file for the cached body of a URL.
+	 * 
+	 * @param context
+	 * @param url
+	 * @return
+	 */
+	static File getBodyFile(Context context, String url) {
+		return context.getFileStreamPath(CACHE_PREFIX + Utils.clean(url));
+	}
+
+	/**
+	 * Get the file for the cache metadata of a URL.
+	 * 
+	 * @param context
+	 * @param url
+	 * @return
+	 */
+	static File getMetaFile(Context context, String url) {
+		return context.getFileStreamPath(CACHE_PREFIX + Utils.clean(url) + META_EXTENSION);
+	}
+
+	/**
+	 * Open the cached body.
+	 * 
+	 * @param file
+	 * @return the stream or null if the file could not be opened
+	 */
+	private static InputStream openFile(File file) {
+		try {
+			return new FileInputStream(file);
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "openFile: " + file, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Read the cached body. The lines are joined like the original cache
+	 * format.
+	 * 
+	 * @param file
+	 * @return the body or null if it could not be read
+	 */
+	private static String readBody(File file) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+			try {
+				StringBuilder builder = new StringBuilder();
+				for (String line; (line = reader.readLine()) != null;) {
+					builder.append(line);
+				}
+				return builder.toString();
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "readBody: " + file, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Read the cache metadata.
+	 * 
+	 * @param file
+	 * @return the metadata; empty if there is no metadata
+	 */
+	private static Properties readMeta(File file) {
+		Properties meta = new Properties();
+		if (file.exists()) {
+			try {
+				InputStream in = new FileInputStream(file);
+				try {
+					meta.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				Log.e(LOG_TAG, "readMeta: " + file, e);
+			}
+		}
+		return meta;
+	}
+
+	/**
+	 * Write the cache metadata.
+	 * 
+	 * @param file
+	 * @param meta
+	 */
+	private static void writeMeta(File file, Properties meta) {
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				meta.store(out, null);
+			} finally {
+				out.close();
+			}
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "writeMeta: " + file, e);
+		}
+	}
+
+	/**
+	 * Copy a stream to a file.
+	 * 
+	 * @param in
+	 * @param file
+	 * @return the number of bytes copied
+	 * @throws Exception
+	 */
+	private static long copy(InputStream in, File file) throws Exception {
+		OutputStream out = new FileOutputStream(file);
+		long length = 0;
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+				length += count;
+			}
+		} finally {
+			out.close();
+		}
+		return length;
+	}
+
+	/**
+	 * Stream that copies the bytes of a download to a temporary file as they
+	 * are read. When the stream is closed the rest of the body is copied and
+	 * the file replaces the cached body; if the download fails the partial
+	 * file is deleted.
+	 */
+	private static class CachingInputStream extends FilterInputStream {
+		private OutputStream out;
+		private File tempFile;
+		private File bodyFile;
+		private File metaFile;
+		private Properties meta;
+		private boolean complete;
+		private boolean failed;
+
+		public CachingInputStream(InputStream in, File tempFile, File bodyFile, File metaFile, Properties meta) throws IOException {
+			super(in);
+			this.tempFile = tempFile;
+			this.bodyFile = bodyFile;
+			this.metaFile = metaFile;
+			this.meta = meta;
+			out = new FileOutputStream(tempFile);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b == -1) {
+				complete = true;
+			} else {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) throws IOException {
+			int length = in.read(buffer, offset, count);
+			if (length == -1) {
+				complete = true;
+			} else {
+				write(buffer, offset, length);
+			}
+			return length;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			// skipped bytes would be missing from the cached copy
+			failed = true;
+			return in.skip(count);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void write(byte[] buffer, int offset, int length) {
+			if (!failed) {
+				try {
+					out.write(buffer, offset, length);
+				} catch (IOException e) {
+					// the reader still gets the data; only the cache is lost
+					Log.e(LOG_TAG, "write: " + tempFile, e);
+					failed = true;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (!complete && !failed) {
+					// a parser can stop before the end of the document, so
+					// copy whatever remains after it
+					byte[] buffer = new byte[BUFFER_SIZE];
+					while (read(buffer, 0, buffer.length) != -1) {
+					}
+				}
+			} catch (IOException e) {
+				Log.e(LOG_TAG, "close: " + tempFile, e);
+			}
+			try {
+				// also releases the connection
+				in.close();
+			} finally {
+				out.close();
+				if (complete && !failed && tempFile.length() > 0 && tempFile.renameTo(bodyFile)) {
+					writeMeta(metaFile, meta);
+				} else {
+					tempFile.delete();
+				}
+			}
+		}
+	}
+
+}
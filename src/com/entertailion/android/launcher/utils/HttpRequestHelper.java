@@ -18,28 +18,38 @@ package com.entertailion.android.launcher.utils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
@@ -55,9 +65,26 @@ import org.apache.http.util.EntityUtils;
 import android.util.Log;
 
 /**
- * Utility class to handle HTTP requests.
+ * Utility class to handle HTTP requests. All the requests share a single
+ * pooled client so that connections to the same host are kept alive and
+ * reused; the responses are compressed with gzip when the server supports it.
  */
 public class HttpRequestHelper {
+	private static final int DEFAULT_TIMEOUT = 60000;
+	private static final int MAX_TOTAL_CONNECTIONS = 8;
+	private static final int MAX_CONNECTIONS_PER_ROUTE = 2;
+	private static final long IDLE_CONNECTION_TIMEOUT = 30000;
+	// maximum wait for a pooled connection, in case a response was not
+	// consumed
+	private static final long CONNECTION_REQUEST_TIMEOUT = 30000;
+
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String GZIP = "gzip";
+
+	private static DefaultHttpClient sharedHttpClient;
+	private static int connectTimeout = DEFAULT_TIMEOUT;
+	private static int readTimeout = DEFAULT_TIMEOUT;
+
 	DefaultHttpClient httpClient;
 	HttpContext localContext;
 	private String ret;
@@ -68,14 +95,53 @@ public class HttpRequestHelper {
 	HttpGet httpGet = null;
 
 	public HttpRequestHelper() {
-		httpClient = createHttpClient();
+		httpClient = getHttpClient();
 		localContext = new BasicHttpContext();
 	}
 
-	public static DefaultHttpClient createHttpClient() {
+	/**
+	 * Get the HTTP client shared by all the requests of the app.
+	 * 
+	 * @return
+	 */
+	public static synchronized DefaultHttpClient getHttpClient() {
+		if (sharedHttpClient == null) {
+			sharedHttpClient = createHttpClient();
+		}
+		return sharedHttpClient;
+	}
+
+	/**
+	 * Set the timeouts of the shared HTTP client.
+	 * 
+	 * @param connect
+	 *            connect timeout in milliseconds
+	 * @param read
+	 *            read timeout in milliseconds
+	 */
+	public static synchronized void setTimeouts(int connect, int read) {
+		connectTimeout = connect;
+		readTimeout = read;
+		if (sharedHttpClient != null) {
+			HttpConnectionParams.setConnectionTimeout(sharedHttpClient.getParams(), connectTimeout);
+			HttpConnectionParams.setSoTimeout(sharedHttpClient.getParams(), readTimeout);
+		}
+	}
+
+	/**
+	 * Create a pooled HTTP client. The connections are kept alive and the
+	 * number of connections is bounded per host.
+	 * 
+	 * @return
+	 */
+	public static synchronized DefaultHttpClient createHttpClient() {
 		HttpParams params = new BasicHttpParams();
-		HttpConnectionParams.setConnectionTimeout(params, 60000);
-		HttpConnectionParams.setSoTimeout(params, 60000);
+		HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+		HttpConnectionParams.setSoTimeout(params, readTimeout);
+		HttpConnectionParams.setStaleCheckingEnabled(params, true);
+		ConnManagerParams.setMaxTotalConnections(params, MAX_TOTAL_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE));
+		ConnManagerParams.setTimeout(params, CONNECTION_REQUEST_TIMEOUT);
 		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
 		HttpProtocolParams.setContentCharset(params, HTTP.DEFAULT_CONTENT_CHARSET);
 		HttpProtocolParams.setUserAgent(params,
@@ -86,7 +152,58 @@ public class HttpRequestHelper {
 		schReg.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
 		ClientConnectionManager conMgr = new ThreadSafeClientConnManager(params, schReg);
 
-		return new DefaultHttpClient(conMgr, params);
+		DefaultHttpClient client = new DefaultHttpClient(conMgr, params);
+		client.addRequestInterceptor(new HttpRequestInterceptor() {
+			public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+				if (!request.containsHeader(ACCEPT_ENCODING)) {
+					request.addHeader(ACCEPT_ENCODING, GZIP);
+				}
+			}
+		});
+		client.addResponseInterceptor(new HttpResponseInterceptor() {
+			public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+				HttpEntity entity = response.getEntity();
+				Header encoding = entity != null ? entity.getContentEncoding() : null;
+				if (encoding != null) {
+					for (HeaderElement element : encoding.getElements()) {
+						if (element.getName().equalsIgnoreCase(GZIP)) {
+							response.setEntity(new GzipDecompressingEntity(entity));
+							return;
+						}
+					}
+				}
+			}
+		});
+		return client;
+	}
+
+	/**
+	 * Execute a request with the shared HTTP client. The caller must consume
+	 * the response entity to release the connection back to the pool.
+	 * 
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	public static HttpResponse execute(HttpUriRequest request) throws IOException {
+		DefaultHttpClient client = getHttpClient();
+		client.getConnectionManager().closeIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
+		return client.execute(request);
+	}
+
+	/**
+	 * Release the connection of a response back to the pool.
+	 * 
+	 * @param response
+	 */
+	public static void consume(HttpResponse response) {
+		if (response != null && response.getEntity() != null) {
+			try {
+				response.getEntity().consumeContent();
+			} catch (IOException e) {
+				Log.d("HttpRequestHelper", "consume", e);
+			}
+		}
 	}
 
 	public void clearCookies() {
@@ -113,8 +230,9 @@ public class HttpRequestHelper {
 		ret = null;
 
 		try {
-			httpClient.getParams().setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.RFC_2109);
 			httpPost = new HttpPost(url);
+			// the client is shared so the policy is only set for this request
+			httpPost.getParams().setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.RFC_2109);
 			response = null;
 			Log.d(TAG, "Setting httpPost headers");
 			httpPost.setHeader("Accept", "text/html,application/xml,application/xhtml+xml,text/html;q=0.9,text/plain;q=0.8,image/png,*/*;q=0.5");
@@ -163,29 +281,26 @@ public class HttpRequestHelper {
 		return sendGet(url + "?" + queryParams);
 	}
 
+	/**
+	 * Get the content stream for a URL. The stream must be closed to release
+	 * the connection back to the pool.
+	 * 
+	 * @param urlString
+	 * @return the stream or null if the response is not OK
+	 * @throws IOException
+	 */
 	public InputStream getHttpStream(String urlString) throws IOException {
 		InputStream in = null;
-		int response = -1;
-
-		URL url = new URL(urlString);
-		URLConnection conn = url.openConnection();
-
-		if (!(conn instanceof HttpURLConnection))
-			throw new IOException("Not an HTTP connection");
-
+		HttpResponse response = null;
 		try {
-			HttpURLConnection httpConn = (HttpURLConnection) conn;
-			httpConn.setAllowUserInteraction(false);
-			httpConn.setInstanceFollowRedirects(true);
-			httpConn.setRequestMethod("GET");
-			httpConn.connect();
-
-			response = httpConn.getResponseCode();
-
-			if (response == HttpURLConnection.HTTP_OK) {
-				in = httpConn.getInputStream();
+			response = httpClient.execute(new HttpGet(urlString), localContext);
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK && response.getEntity() != null) {
+				in = response.getEntity().getContent();
+			} else {
+				consume(response);
 			}
 		} catch (Exception e) {
+			consume(response);
 			throw new IOException("Error connecting");
 		} // end try-catch
 
@@ -213,4 +328,25 @@ public class HttpRequestHelper {
 		return URLEncodedUtils.format(qparams, "UTF-8");
 
 	}
+
+	/**
+	 * Decompress a gzip response entity.
+	 */
+	private static class GzipDecompressingEntity extends HttpEntityWrapper {
+
+		public GzipDecompressingEntity(HttpEntity entity) {
+			super(entity);
+		}
+
+		@Override
+		public InputStream getContent() throws IOException, IllegalStateException {
+			return new GZIPInputStream(wrappedEntity.getContent());
+		}
+
+		@Override
+		public long getContentLength() {
+			// the decompressed length is not known
+			return -1;
+		}
+	}
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.R;
+
+/**
+ * Decode the icon files of the items on a small pool of background threads
+ * so that scrolling the rows does not block on the file system. Each image
+ * view is tagged with its current request; when a view is recycled for
+ * another item the previous request is cancelled and its result is dropped.
+ * A placeholder is displayed until the icon is decoded.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class IconLoader {
+	private static final String LOG_TAG = "IconLoader";
+
+	private static final int DECODE_THREADS = 2;
+
+	private Context context;
+	private BitmapCache bitmapCache;
+	private ExecutorService executor;
+	private Handler handler;
+	private int iconSize;
+
+	/**
+	 * @param context
+	 * @param bitmapCache
+	 *            cache for the decoded icons
+	 */
+	public IconLoader(Context context, BitmapCache bitmapCache) {
+		this.context = context.getApplicationContext();
+		this.bitmapCache = bitmapCache;
+		handler = new Handler(Looper.getMainLooper());
+		iconSize = (int) context.getResources().getDimension(android.R.dimen.app_icon_size);
+		executor = Executors.newFixedThreadPool(DECODE_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, LOG_TAG);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Get the shared icon loader owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static IconLoader getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getIconLoader();
+	}
+
+	/**
+	 * Display the icon stored in a file of the app files directory. Cached
+	 * icons are displayed immediately; otherwise the placeholder is displayed
+	 * and the icon is decoded in the background.
+	 * 
+	 * @param imageView
+	 * @param fileName
+	 */
+	public void loadFileIcon(ImageView imageView, String fileName) {
+		Bitmap bitmap = bitmapCache.get(fileName);
+		if (bitmap != null) {
+			cancel(imageView);
+			imageView.setImageDrawable(new FastBitmapDrawable(bitmap));
+			return;
+		}
+
+		Request request = (Request) imageView.getTag(R.id.icon_request);
+		if (request != null && request.fileName.equals(fileName)) {
+			// already loading the icon for the view
+			return;
+		}
+		cancel(imageView);
+		request = new Request(imageView, fileName);
+		imageView.setTag(R.id.icon_request, request);
+		imageView.setImageResource(R.drawable.empty);
+		request.future = executor.submit(request);
+	}
+
+	/**
+	 * Cancel the pending request for a view. Called when a view is bound to
+	 * another item or displays a cached icon.
+	 * 
+	 * @param imageView
+	 */
+	public void cancel(ImageView imageView) {
+		Request request = (Request) imageView.getTag(R.id.icon_request);
+		if (request != null) {
+			request.cancelled = true;
+			if (request.future != null) {
+				request.future.cancel(false);
+			}
+			imageView.setTag(R.id.icon_request, null);
+		}
+	}
+
+	/**
+	 * Decode an icon file downsampled close to the icon size and create the
+	 * thumbnail.
+	 * 
+	 * @param fileName
+	 * @return the thumbnail or null if the file could not be decoded
+	 */
+	private Bitmap decodeIcon(String fileName) {
+		File file = context.getFileStreamPath(fileName);
+		if (!file.exists()) {
+			return null;
+		}
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+		int sampleSize = 1;
+		if (iconSize > 0) {
+			while (options.outWidth / (sampleSize * 2) >= iconSize && options.outHeight / (sampleSize * 2) >= iconSize) {
+				sampleSize *= 2;
+			}
+		}
+		options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+		Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+		if (bitmap != null) {
+			bitmap = Utils.createBitmapThumbnail(bitmap, context);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Request to decode the icon for a view.
+	 */
+	private class Request implements Runnable {
+		private final ImageView imageView;
+		private final String fileName;
+		private Future<?> future;
+		private volatile boolean cancelled;
+
+		public Request(ImageView imageView, String fileName) {
+			this.imageView = imageView;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public void run() {
+			if (cancelled) {
+				return;
+			}
+			Bitmap bitmap = bitmapCache.get(fileName);
+			if (bitmap == null) {
+				try {
+					bitmap = decodeIcon(fileName);
+				} catch (Throwable e) {
+					Log.e(LOG_TAG, "decodeIcon: " + fileName, e);
+				}
+				bitmapCache.put(fileName, bitmap);
+			}
+			final Bitmap icon = bitmap;
+			handler.post(new Runnable() {
+				public void run() {
+					// the view could have been recycled for another item
+					if (!cancelled && imageView.getTag(R.id.icon_request) == Request.this) {
+						imageView.setTag(R.id.icon_request, null);
+						if (icon != null) {
+							imageView.setImageDrawable(new FastBitmapDrawable(icon));
+						} else {
+							// same default icon as the items without an icon
+							imageView.setImageResource(android.R.drawable.ic_input_get);
+						}
+					}
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+
+/**
+ * Remember the thumbnails of the icons so that each icon is scaled only once.
+ * The thumbnails are keyed by the identity of the source icon and the size
+ * of the thumbnail; the entries are dropped when the source icon is no
+ * longer used. Thumbnails can be requested from any thread; an icon that is
+ * being scaled by another thread is waited for instead of being scaled
+ * again.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class ThumbnailCache {
+	private static final String LOG_TAG = "ThumbnailCache";
+
+	/**
+	 * Thumbnail of a source for a size. The thumbnail can be the source
+	 * itself, so it is only weakly referenced.
+	 */
+	private static class Entry {
+		private final int size;
+		private final WeakReference<Object> thumbnail;
+
+		Entry(int size, Object thumbnail) {
+			this.size = size;
+			this.thumbnail = new WeakReference<Object>(thumbnail);
+		}
+	}
+
+	private Context context;
+	// thumbnails by source identity
+	private WeakHashMap<Object, Entry> thumbnails = new WeakHashMap<Object, Entry>();
+	private int hits;
+	private int misses;
+
+	/**
+	 * @param context
+	 */
+	public ThumbnailCache(Context context) {
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Get the shared thumbnail cache owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static ThumbnailCache getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getThumbnailCache();
+	}
+
+	/**
+	 * Get the thumbnail of an icon.
+	 * 
+	 * @param icon
+	 * @return the thumbnail or the icon itself if it does not need scaling
+	 */
+	public Drawable getIconThumbnail(Drawable icon) {
+		if (icon == null) {
+			return null;
+		}
+		int size = Utils.getIconSize(context);
+		// the bounds of the icon are changed while it is drawn
+		synchronized (icon) {
+			Object thumbnail = get(icon, size);
+			if (thumbnail == null) {
+				thumbnail = Utils.createIconThumbnail(icon, context);
+				put(icon, size, thumbnail);
+			}
+			return (Drawable) thumbnail;
+		}
+	}
+
+	/**
+	 * Get the thumbnail of a bitmap.
+	 * 
+	 * @param bitmap
+	 * @return the thumbnail or the bitmap itself if it does not need scaling
+	 */
+	public Bitmap getBitmapThumbnail(Bitmap bitmap) {
+		if (bitmap == null) {
+			return null;
+		}
+		int size = Utils.getIconSize(context);
+		synchronized (bitmap) {
+			Object thumbnail = get(bitmap, size);
+			if (thumbnail == null) {
+				thumbnail = Utils.createBitmapThumbnail(bitmap, context);
+				put(bitmap, size, thumbnail);
+			}
+			return (Bitmap) thumbnail;
+		}
+	}
+
+	private Object get(Object source, int size) {
+		synchronized (thumbnails) {
+			Entry entry = thumbnails.get(source);
+			Object thumbnail = entry != null && entry.size == size ? entry.thumbnail.get() : null;
+			if (thumbnail != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+			return thumbnail;
+		}
+	}
+
+	private void put(Object source, int size, Object thumbnail) {
+		synchronized (thumbnails) {
+			Entry entry = new Entry(size, thumbnail);
+			thumbnails.put(source, entry);
+			if (thumbnail != source) {
+				// the thumbnail is already scaled
+				thumbnails.put(thumbnail, entry);
+			}
+		}
+	}
+
+	/**
+	 * Log the cache statistics.
+	 */
+	public void logStats() {
+		synchronized (thumbnails) {
+			Log.d(LOG_TAG, "size=" + thumbnails.size() + ", hits=" + hits + ", misses=" + misses);
+		}
+	}
+
+}
@@ -17,19 +17,14 @@
 package com.entertailion.android.launcher.utils;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Method;
-import java.net.HttpURLConnection;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
-import java.net.URL;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.Enumeration;
@@ -38,11 +33,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.regex.Pattern;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
@@ -94,22 +84,16 @@ public class Utils {
 
 	private static int utilsIconWidth = -1;
 	private static int utilsIconHeight = -1;
-	private static final Paint utilsPaint = new Paint();
-	private static final Rect utilsBounds = new Rect();
-	private static final Rect utilsOldBounds = new Rect();
-	private static final Canvas utilsCanvas = new Canvas();
-
-	static {
-		utilsCanvas.setDrawFilter(new PaintFlagsDrawFilter(Paint.DITHER_FLAG, Paint.FILTER_BITMAP_FLAG));
-	}
 
 	/**
 	 * Returns a Drawable representing the thumbnail of the specified Drawable.
 	 * The size of the thumbnail is defined by the dimension
 	 * android.R.dimen.launcher_application_icon_size.
 	 * 
-	 * This method is not thread-safe and should be invoked on the UI thread
-	 * only.
+	 * Each call draws on its own canvas, so thumbnails can be created on any
+	 * thread; the same icon should not be scaled concurrently since its
+	 * bounds are changed while it is drawn. Use ThumbnailCache to scale each
+	 * icon only once.
 	 * 
 	 * @param icon
 	 *            The icon to get a thumbnail of.
@@ -121,12 +105,10 @@ public class Utils {
 	 */
 	public static final Drawable createIconThumbnail(Drawable icon, Context context) {
 		if (icon != null) {
-			if (utilsIconWidth == -1) {
-				final Resources resources = context.getResources();
-				utilsIconWidth = utilsIconHeight = (int) resources.getDimension(android.R.dimen.app_icon_size);
-			}
-			int width = utilsIconWidth;
-			int height = utilsIconHeight;
+			final int iconWidth = getIconSize(context);
+			final int iconHeight = iconWidth;
+			int width = iconWidth;
+			int height = iconHeight;
 
 			float scale = 1.0f;
 			if (icon instanceof PaintDrawable) {
@@ -141,46 +123,44 @@ public class Utils {
 					bitmapDrawable.setTargetDensity(context.getResources().getDisplayMetrics());
 				}
 			}
-			int iconWidth = icon.getIntrinsicWidth();
-			int iconHeight = icon.getIntrinsicHeight();
+			int sourceWidth = icon.getIntrinsicWidth();
+			int sourceHeight = icon.getIntrinsicHeight();
 
 			if (width > 0 && height > 0) {
-				if (width < iconWidth || height < iconHeight || scale != 1.0f) {
-					final float ratio = (float) iconWidth / iconHeight;
+				if (width < sourceWidth || height < sourceHeight || scale != 1.0f) {
+					final float ratio = (float) sourceWidth / sourceHeight;
 
-					if (iconWidth > iconHeight) {
+					if (sourceWidth > sourceHeight) {
 						height = (int) (width / ratio);
-					} else if (iconHeight > iconWidth) {
+					} else if (sourceHeight > sourceWidth) {
 						width = (int) (height * ratio);
 					}
 
 					final Bitmap.Config c = icon.getOpacity() != PixelFormat.OPAQUE ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
-					final Bitmap thumb = Bitmap.createBitmap(utilsIconWidth, utilsIconHeight, c);
-					final Canvas canvas = utilsCanvas;
-					canvas.setBitmap(thumb);
+					final Bitmap thumb = Bitmap.createBitmap(iconWidth, iconHeight, c);
+					final Canvas canvas = createThumbnailCanvas(thumb);
 					// Copy the old bounds to restore them later
 					// If we were to do oldBounds = icon.getBounds(),
 					// the call to setBounds() that follows would
 					// change the same instance and we would lose the
 					// old bounds
-					utilsOldBounds.set(icon.getBounds());
-					final int x = (utilsIconWidth - width) / 2;
-					final int y = (utilsIconHeight - height) / 2;
+					final Rect oldBounds = new Rect(icon.getBounds());
+					final int x = (iconWidth - width) / 2;
+					final int y = (iconHeight - height) / 2;
 					icon.setBounds(x, y, x + width, y + height);
 					icon.draw(canvas);
-					icon.setBounds(utilsOldBounds);
+					icon.setBounds(oldBounds);
 					icon = new FastBitmapDrawable(thumb);
-				} else if (iconWidth < width && iconHeight < height) {
+				} else if (sourceWidth < width && sourceHeight < height) {
 					final Bitmap.Config c = Bitmap.Config.ARGB_8888;
-					final Bitmap thumb = Bitmap.createBitmap(utilsIconWidth, utilsIconHeight, c);
-					final Canvas canvas = utilsCanvas;
-					canvas.setBitmap(thumb);
-					utilsOldBounds.set(icon.getBounds());
-					final int x = (width - iconWidth) / 2;
-					final int y = (height - iconHeight) / 2;
-					icon.setBounds(x, y, x + iconWidth, y + iconHeight);
+					final Bitmap thumb = Bitmap.createBitmap(iconWidth, iconHeight, c);
+					final Canvas canvas = createThumbnailCanvas(thumb);
+					final Rect oldBounds = new Rect(icon.getBounds());
+					final int x = (width - sourceWidth) / 2;
+					final int y = (height - sourceHeight) / 2;
+					icon.setBounds(x, y, x + sourceWidth, y + sourceHeight);
 					icon.draw(canvas);
-					icon.setBounds(utilsOldBounds);
+					icon.setBounds(oldBounds);
 					icon = new FastBitmapDrawable(thumb);
 				}
 			}
@@ -194,8 +174,8 @@ public class Utils {
 	 * size of the thumbnail is defined by the dimension
 	 * android.R.dimen.launcher_application_icon_size.
 	 * 
-	 * This method is not thread-safe and should be invoked on the UI thread
-	 * only.
+	 * Each call draws on its own canvas, so thumbnails can be created on any
+	 * thread.
 	 * 
 	 * @param bitmap
 	 *            The bitmap to get a thumbnail of.
@@ -206,13 +186,11 @@ public class Utils {
 	 *         thumbnail could not be created.
 	 */
 	public static final Bitmap createBitmapThumbnail(Bitmap bitmap, Context context) {
-		if (utilsIconWidth == -1) {
-			final Resources resources = context.getResources();
-			utilsIconWidth = utilsIconHeight = (int) resources.getDimension(android.R.dimen.app_icon_size);
-		}
+		final int iconWidth = getIconSize(context);
+		final int iconHeight = iconWidth;
 
-		int width = utilsIconWidth;
-		int height = utilsIconHeight;
+		int width = iconWidth;
+		int height = iconHeight;
 
 		final int bitmapWidth = bitmap.getWidth();
 		final int bitmapHeight = bitmap.getHeight();
@@ -227,27 +205,25 @@ public class Utils {
 					width = (int) (height * ratio);
 				}
 
-				final Bitmap.Config c = (width == utilsIconWidth && height == utilsIconHeight && bitmap.getConfig() != null) ? bitmap.getConfig()
+				final Bitmap.Config c = (width == iconWidth && height == iconHeight && bitmap.getConfig() != null) ? bitmap.getConfig()
 						: Bitmap.Config.ARGB_8888;
-				final Bitmap thumb = Bitmap.createBitmap(utilsIconWidth, utilsIconHeight, c);
-				final Canvas canvas = utilsCanvas;
-				final Paint paint = utilsPaint;
-				canvas.setBitmap(thumb);
+				final Bitmap thumb = Bitmap.createBitmap(iconWidth, iconHeight, c);
+				final Canvas canvas = createThumbnailCanvas(thumb);
+				final Paint paint = new Paint();
 				paint.setDither(false);
 				paint.setFilterBitmap(true);
-				utilsBounds.set((utilsIconWidth - width) / 2, (utilsIconHeight - height) / 2, width, height);
-				utilsOldBounds.set(0, 0, bitmapWidth, bitmapHeight);
-				canvas.drawBitmap(bitmap, utilsOldBounds, utilsBounds, paint);
+				final Rect bounds = new Rect((iconWidth - width) / 2, (iconHeight - height) / 2, width, height);
+				final Rect source = new Rect(0, 0, bitmapWidth, bitmapHeight);
+				canvas.drawBitmap(bitmap, source, bounds, paint);
 				return thumb;
 			} else if (bitmapWidth < width || bitmapHeight < height) {
 				final Bitmap.Config c = Bitmap.Config.ARGB_8888;
-				final Bitmap thumb = Bitmap.createBitmap(utilsIconWidth, utilsIconHeight, c);
-				final Canvas canvas = utilsCanvas;
-				final Paint paint = utilsPaint;
-				canvas.setBitmap(thumb);
+				final Bitmap thumb = Bitmap.createBitmap(iconWidth, iconHeight, c);
+				final Canvas canvas = createThumbnailCanvas(thumb);
+				final Paint paint = new Paint();
 				paint.setDither(false);
 				paint.setFilterBitmap(true);
-				canvas.drawBitmap(bitmap, (utilsIconWidth - bitmapWidth) / 2, (utilsIconHeight - bitmapHeight) / 2, paint);
+				canvas.drawBitmap(bitmap, (iconWidth - bitmapWidth) / 2, (iconHeight - bitmapHeight) / 2, paint);
 				return thumb;
 			}
 		}
@@ -255,6 +231,22 @@ public class Utils {
 		return bitmap;
 	}
 
+	/**
+	 * Get the size of the application icons.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static final int getIconSize(Context context) {
+		return (int) context.getResources().getDimension(android.R.dimen.app_icon_size);
+	}
+
+	private static Canvas createThumbnailCanvas(Bitmap thumb) {
+		final Canvas canvas = new Canvas(thumb);
+		canvas.setDrawFilter(new PaintFlagsDrawFilter(Paint.DITHER_FLAG, Paint.FILTER_BITMAP_FLAG));
+		return canvas;
+	}
+
 	/**
 	 * ADW Create an icon drawable with reflection :P Thanks to
 	 * http://www.inter-fuser.com/2009/12/android-reflections-with-bitmaps.html
@@ -469,12 +461,19 @@ public class Utils {
 
 	public static final Bitmap getBitmapFromURL(String src) {
 		try {
-			URL url = new URL(src);
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setDoInput(true);
-			connection.connect();
-			InputStream input = connection.getInputStream();
-			Bitmap myBitmap = BitmapFactory.decodeStream(input);
+			InputStream input = new HttpRequestHelper().getHttpStream(src);
+			if (input == null) {
+				return null;
+			}
+			Bitmap myBitmap;
+			try {
+				myBitmap = BitmapFactory.decodeStream(input);
+			} finally {
+				input.close();
+			}
+			if (myBitmap == null) {
+				return null;
+			}
 			int size = Math.max(myBitmap.getWidth(), myBitmap.getHeight());
 			Bitmap b = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
 			Canvas c = new Canvas(b);
@@ -639,74 +638,19 @@ public class Utils {
 		return null;
 	}
 
-	public synchronized static final String getCachedData(Context context, String url, boolean refresh) {
-		Log.d(LOG_TAG, "getCachedData: " + url);
-		String data = null;
-		boolean exists = false;
-		String cleanUrl = "cache." + clean(url);
-		File file = context.getFileStreamPath(cleanUrl);
-		if (file != null && file.exists()) {
-			exists = true;
-		}
-
-		if (!refresh && exists) {
-			try {
-				FileInputStream fis = context.openFileInput(cleanUrl);
-				BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-				StringBuffer buffer = new StringBuffer();
-				for (String line; (line = br.readLine()) != null;) {
-					buffer.append(line);
-				}
-				fis.close();
-				data = buffer.toString();
-			} catch (Exception e) {
-				Log.e(LOG_TAG, "Error getData: " + url, e);
-			}
-		} else {
-			boolean found = false;
-			StringBuilder builder = new StringBuilder();
-			try {
-				InputStream stream = new HttpRequestHelper().getHttpStream(url);
-				BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-				String line;
-				while ((line = reader.readLine()) != null) {
-					builder.append(line);
-				}
-				stream.close();
-				found = true;
-			} catch (IOException e) {
-				Log.e(LOG_TAG, "Error getData: " + url, e);
-			} catch (Exception e) {
-				Log.e(LOG_TAG, "stream is NULL");
-			}
-			data = builder.toString();
-			if (!found && exists) {
-				try {
-					FileInputStream fis = context.openFileInput(cleanUrl);
-					BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-					StringBuffer buffer = new StringBuffer();
-					for (String line; (line = br.readLine()) != null;) {
-						buffer.append(line);
-					}
-					fis.close();
-					data = buffer.toString();
-				} catch (Exception e) {
-					Log.e(LOG_TAG, "Error getData: " + url, e);
-				}
-			}
-			if (data != null && data.trim().length() > 0) {
-				try {
-					FileOutputStream fos = context.openFileOutput(cleanUrl, Context.MODE_PRIVATE);
-					fos.write(data.getBytes());
-					fos.close();
-				} catch (FileNotFoundException e) {
-					Log.e(LOG_TAG, "Error getData: " + url, e);
-				} catch (IOException e) {
-					Log.e(LOG_TAG, "Error getData: " + url, e);
-				}
-			}
-		}
-		return data;
+	/**
+	 * Get the data for a URL using the HTTP cache. Concurrent requests for the
+	 * same URL share a single download.
+	 * 
+	 * @param context
+	 * @param url
+	 * @param refresh
+	 *            revalidate the cached data once it is no longer fresh
+	 * @return
+	 * @see HttpCache#getData(Context, String, boolean)
+	 */
+	public static final String getCachedData(Context context, String url, boolean refresh) {
+		return HttpCache.getData(context, url, refresh);
 	}
 
 	public static final float fahrenheitToCelsius(float fahrenheit) {
@@ -756,103 +700,17 @@ public class Utils {
 
 	/**
 	 * Determine if there is a high resolution icon available for the web site.
+	 * The result is cached per host.
 	 * 
 	 * @param context
 	 * @param url
 	 * @return
 	 */
 	public static final String getWebSiteIcon(Context context, String url) {
-		String icon = null;
 		if (url != null) {
-			String data = Utils.getCachedData(context, url, true);
-			if (data != null) {
-				Document doc = Jsoup.parse(data);
-				if (doc != null) {
-					String href = null;
-					Elements metas = doc.select("meta[itemprop=image]");
-					if (metas.size() > 0) {
-						Element meta = metas.first();
-						href = meta.attr("abs:content");
-						// weird jsoup bug: abs doesn't always work
-						if (href==null || href.trim().length()==0) {
-							href = url + meta.attr("content");
-						}
-					}
-					if (href == null || href.trim().length() == 0) {
-						// Find the Microsoft tile icon
-						metas = doc.select("meta[name=msapplication-TileImage]");
-						if (metas.size() > 0) {
-							Element meta = metas.first();
-							href = meta.attr("abs:content");
-							// weird jsoup bug: abs doesn't always work
-							if (href==null || href.trim().length()==0) {
-								href = url + meta.attr("content");
-							}
-						}
-					}
-					if (href == null || href.trim().length() == 0) {
-						// Find the Apple touch icon
-						Elements links = doc.select("link[rel=apple-touch-icon]");
-						if (links.size() > 0) {
-							Element link = links.first();
-							href = link.attr("abs:href");
-							// weird jsoup bug: abs doesn't always work
-							if (href==null || href.trim().length()==0) {
-								href = url +link.attr("href");
-							}
-						}
-					}
-					if (href == null || href.trim().length() == 0) {
-						// Find the Facebook open graph icon
-						metas = doc.select("meta[property=og:image]");
-						if (metas.size() > 0) {
-							Element link = metas.first();
-							href = link.attr("abs:content");
-							// weird jsoup bug: abs doesn't always work
-							if (href==null || href.trim().length()==0) {
-								href = url +link.attr("content");
-							}
-						}
-					}
-					if (href == null || href.trim().length() == 0) {
-						// Find the Twitter card icon
-						metas = doc.select("meta[name=twitter:image]");
-						if (metas.size() > 0) {
-							Element link = metas.first();
-							href = link.attr("abs:value");
-							// weird jsoup bug: abs doesn't always work
-							if (href==null || href.trim().length()==0) {
-								href = url +link.attr("value");
-							}
-						}
-					}
-					if (href == null || href.trim().length() == 0) {
-						metas = doc.select("link[itemprop=thumbnailUrl]");
-						if (metas.size() > 0) {
-							Element link = metas.first();
-							href = link.attr("abs:href");
-							// weird jsoup bug: abs doesn't always work
-							if (href==null || href.trim().length()==0) {
-								href = url +link.attr("href");
-							}
-						}
-					}
-					if (href != null && href.trim().length() > 0) {
-						try {
-							Bitmap bitmap = Utils.getBitmapFromURL(href);
-							if (bitmap != null) {
-								icon = "web_site_icon_" + Utils.clean(href) + ".png";
-								Utils.saveToFile(context, bitmap, bitmap.getWidth(), bitmap.getHeight(), icon);
-								bitmap.recycle();
-							}
-						} catch (Exception e) {
-							Log.d(LOG_TAG, "getWebSiteIcon", e);
-						}
-					}
-				}
-			}
+			return WebSiteIcons.getIcon(context, url);
 		}
-		return icon;
+		return null;
 	}
 
 	public static final void launchLiveTV(Context context) {
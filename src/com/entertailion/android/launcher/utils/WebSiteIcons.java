@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.utils;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+/**
+ * Find the high resolution icons advertised by web sites. Only the head of
+ * the home page is downloaded and all the known icon declarations are
+ * collected in a single pass; the icon with the largest declared size wins.
+ * The result is remembered per host so that shortcuts for the same web site
+ * do not scrape the site again.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class WebSiteIcons {
+	private static final String LOG_TAG = "WebSiteIcons";
+
+	private static final String PREFERENCES_NAME = "web_site_icons";
+	private static final String NOT_FOUND_PREFIX = "none:";
+	// retry web sites without an icon after a day
+	private static final long NOT_FOUND_TIMEOUT = 24 * 60 * 60 * 1000;
+
+	// stop reading pages without a head end tag
+	private static final int MAX_HEAD_SIZE = 64 * 1024;
+	private static final int BUFFER_SIZE = 4096;
+	private static final String HEAD_END = "</head";
+
+	// the icon declarations; for the same size the order of preference is
+	// itemprop image, Windows tile, Apple touch icon, open graph, Twitter
+	// card and thumbnail URL
+	private static final String ICON_SELECTOR = "meta[itemprop=image], meta[name=msapplication-TileImage], link[rel=apple-touch-icon], "
+			+ "meta[property=og:image], meta[name=twitter:image], link[itemprop=thumbnailUrl], meta[property=og:image:width]";
+	private static final int OG_IMAGE_PREFERENCE = 3;
+	// Windows tiles are 144x144
+	private static final int TILE_IMAGE_SIZE = 144;
+	private static final Pattern SIZES_PATTERN = Pattern.compile("(\\d+)x(\\d+)");
+
+	/**
+	 * Get the icon file for a web site. The icon is downloaded the first time
+	 * a host is used.
+	 * 
+	 * @param context
+	 * @param url
+	 * @return the icon file name or null if the web site has no icon
+	 */
+	public static String getIcon(Context context, String url) {
+		String host = Uri.parse(url).getHost();
+		if (host == null) {
+			return null;
+		}
+		host = host.toLowerCase(Locale.US);
+		SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+		String cached = preferences.getString(host, null);
+		if (cached != null) {
+			if (cached.startsWith(NOT_FOUND_PREFIX)) {
+				try {
+					long time = Long.parseLong(cached.substring(NOT_FOUND_PREFIX.length()));
+					if (System.currentTimeMillis() - time < NOT_FOUND_TIMEOUT) {
+						Log.d(LOG_TAG, "no icon: " + host);
+						return null;
+					}
+				} catch (NumberFormatException e) {
+				}
+			} else if (context.getFileStreamPath(cached).exists()) {
+				Log.d(LOG_TAG, "cached icon: " + host + "=" + cached);
+				return cached;
+			}
+		}
+
+		String head = readHead(url);
+		if (head == null) {
+			// the web site is not available; try again the next time
+			return null;
+		}
+		String icon = null;
+		String href = findIconUrl(head, url);
+		if (href != null) {
+			try {
+				Bitmap bitmap = Utils.getBitmapFromURL(href);
+				if (bitmap != null) {
+					icon = "web_site_icon_" + Utils.clean(href) + ".png";
+					Utils.saveToFile(context, bitmap, bitmap.getWidth(), bitmap.getHeight(), icon);
+					bitmap.recycle();
+				}
+			} catch (Exception e) {
+				Log.d(LOG_TAG, "getIcon", e);
+				icon = null;
+			}
+		}
+		if (icon != null) {
+			preferences.edit().putString(host, icon).commit();
+		} else if (href == null) {
+			// an icon that fails to download is retried the next time
+			preferences.edit().putString(host, NOT_FOUND_PREFIX + System.currentTimeMillis()).commit();
+		}
+		return icon;
+	}
+
+	/**
+	 * Find the URL of the best icon declared in the head of a web page.
+	 * 
+	 * @param head
+	 * @param url
+	 *            the URL of the page to resolve relative URLs
+	 * @return the icon URL or null if the page does not declare an icon
+	 */
+	private static String findIconUrl(String head, String url) {
+		Document doc = Jsoup.parse(head, url);
+		String bestHref = null;
+		int bestSize = -1;
+		int bestPreference = Integer.MAX_VALUE;
+		String ogImageHref = null;
+		int ogImageSize = 0;
+		for (Element element : doc.select(ICON_SELECTOR)) {
+			String attribute;
+			int size = 0;
+			int preference;
+			if (element.hasAttr("itemprop") && element.tagName().equals("meta")) {
+				attribute = "content";
+				preference = 0;
+			} else if (element.hasAttr("itemprop")) {
+				attribute = "href";
+				preference = 5;
+			} else if ("msapplication-TileImage".equalsIgnoreCase(element.attr("name"))) {
+				attribute = "content";
+				size = TILE_IMAGE_SIZE;
+				preference = 1;
+			} else if (element.tagName().equals("link")) {
+				attribute = "href";
+				size = getSize(element.attr("sizes"));
+				preference = 2;
+			} else if ("og:image:width".equals(element.attr("property"))) {
+				ogImageSize = parseInt(element.attr("content"));
+				continue;
+			} else if (element.hasAttr("property")) {
+				if (ogImageHref == null) {
+					ogImageHref = getHref(element, "content", url);
+				}
+				continue;
+			} else {
+				attribute = element.hasAttr("value") ? "value" : "content";
+				preference = 4;
+			}
+			String href = getHref(element, attribute, url);
+			if (href != null && (size > bestSize || (size == bestSize && preference < bestPreference))) {
+				bestHref = href;
+				bestSize = size;
+				bestPreference = preference;
+			}
+		}
+		// the open graph size is declared by a separate tag
+		if (ogImageHref != null && (ogImageSize > bestSize || (ogImageSize == bestSize && OG_IMAGE_PREFERENCE < bestPreference))) {
+			bestHref = ogImageHref;
+			bestSize = ogImageSize;
+		}
+		Log.d(LOG_TAG, "findIconUrl: " + url + "=" + bestHref + " (" + bestSize + ")");
+		return bestHref;
+	}
+
+	/**
+	 * Download a web page up to the end of its head. The rest of the page is
+	 * not downloaded.
+	 * 
+	 * @param url
+	 * @return the head or null if the page could not be downloaded
+	 */
+	private static String readHead(String url) {
+		HttpGet request = new HttpGet(url);
+		HttpResponse response = null;
+		try {
+			response = HttpRequestHelper.execute(request);
+			HttpEntity entity = response.getEntity();
+			if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || entity == null) {
+				Log.d(LOG_TAG, "response " + response.getStatusLine().getStatusCode() + ": " + url);
+				HttpRequestHelper.consume(response);
+				return null;
+			}
+			String charset = EntityUtils.getContentCharSet(entity);
+			Reader reader = new InputStreamReader(entity.getContent(), charset != null ? charset : "UTF-8");
+			StringBuilder builder = new StringBuilder();
+			char[] buffer = new char[BUFFER_SIZE];
+			int count;
+			while (builder.length() < MAX_HEAD_SIZE && (count = reader.read(buffer)) != -1) {
+				// the end tag could span two reads
+				int from = Math.max(0, builder.length() - HEAD_END.length());
+				builder.append(buffer, 0, count);
+				int index = builder.substring(from).toLowerCase(Locale.US).indexOf(HEAD_END);
+				if (index != -1) {
+					builder.setLength(from + index);
+					break;
+				}
+			}
+			return builder.toString();
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "readHead: " + url, e);
+		} finally {
+			// close the connection instead of downloading the rest of the page
+			request.abort();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the absolute URL of an icon declaration.
+	 * 
+	 * @param element
+	 * @param attribute
+	 * @param url
+	 * @return
+	 */
+	private static String getHref(Element element, String attribute, String url) {
+		String value = element.attr(attribute);
+		if (value == null || value.trim().length() == 0) {
+			return null;
+		}
+		String href = element.attr("abs:" + attribute);
+		// weird jsoup bug: abs doesn't always work
+		if (href == null || href.trim().length() == 0) {
+			href = url + value;
+		}
+		return href;
+	}
+
+	/**
+	 * Get the largest size of a link sizes attribute, e.g. "72x72 114x114".
+	 * 
+	 * @param sizes
+	 * @return
+	 */
+	private static int getSize(String sizes) {
+		int size = 0;
+		if (sizes != null) {
+			Matcher matcher = SIZES_PATTERN.matcher(sizes);
+			while (matcher.find()) {
+				size = Math.max(size, Math.min(parseInt(matcher.group(1)), parseInt(matcher.group(2))));
+			}
+		}
+		return size;
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+}
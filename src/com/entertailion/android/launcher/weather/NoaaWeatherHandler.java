@@ -19,6 +19,8 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -44,6 +46,11 @@ public class NoaaWeatherHandler extends DefaultHandler {
 
 	private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd"); // 2012-05-28
 
+	// NOAA data is published once an hour
+	private static final long DEFAULT_REFRESH_FREQUENCY = 60 * 60 * 1000;
+	// ISO 8601 duration, e.g. PT1H
+	private static final Pattern DURATION_PATTERN = Pattern.compile("P(?:(\\d+)D)?(?:T(?:(\\d+)H)?(?:(\\d+)M)?(?:(\\d+)S)?)?");
+
 	protected boolean isDay = true;
 	protected WeatherSet weatherSet = null;
 
@@ -67,6 +74,8 @@ public class NoaaWeatherHandler extends DefaultHandler {
 	private StringBuffer chars = new StringBuffer();
 	private String today;
 	private String tomorrow;
+	private long refreshFrequency = DEFAULT_REFRESH_FREQUENCY;
+	private long creationTime;
 
 	public NoaaWeatherHandler(boolean isDay) {
 		this.isDay = isDay;
@@ -87,7 +96,10 @@ public class NoaaWeatherHandler extends DefaultHandler {
 
 	@Override
 	public void endDocument() throws SAXException {
-		// Nothing
+		// the forecast is valid until the next one is published
+		long now = System.currentTimeMillis();
+		long validUntil = (creationTime > 0 && creationTime <= now ? creationTime : now) + refreshFrequency;
+		this.weatherSet.setValidUntil(validUntil);
 	}
 
 	@Override
@@ -148,6 +160,11 @@ public class NoaaWeatherHandler extends DefaultHandler {
 					hazardNameMapping.add(dataAttribute);
 				}
 			}
+		} else if (localName.equals("creation-date")) {
+			long frequency = parseDuration(atts.getValue("refresh-frequency"));
+			if (frequency > 0) {
+				refreshFrequency = frequency;
+			}
 		}
 	}
 
@@ -276,7 +293,52 @@ public class NoaaWeatherHandler extends DefaultHandler {
 			in_current_conditions = false;
 		} else if (localName.equals("hazardTextURL")) {
 			hazardUrlMapping.add(chars.toString());
+		} else if (localName.equals("creation-date")) {
+			creationTime = parseDateTime(chars.toString().trim());
+		}
+	}
+
+	/**
+	 * Parse an ISO 8601 duration like PT1H.
+	 * 
+	 * @param value
+	 * @return the duration in milliseconds or 0 if the value is invalid
+	 */
+	private static long parseDuration(String value) {
+		if (value != null) {
+			Matcher matcher = DURATION_PATTERN.matcher(value.trim());
+			if (matcher.matches()) {
+				long seconds = 0;
+				long[] units = { 24 * 60 * 60, 60 * 60, 60, 1 };
+				for (int i = 0; i < units.length; i++) {
+					if (matcher.group(i + 1) != null) {
+						seconds += Long.parseLong(matcher.group(i + 1)) * units[i];
+					}
+				}
+				return seconds * 1000;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Parse a date time like 2012-05-28T10:27:12-05:00.
+	 * 
+	 * @param value
+	 * @return the time or 0 if the value is invalid
+	 */
+	private static long parseDateTime(String value) {
+		try {
+			// the time zone format does not support the colon
+			value = value.replaceAll("([+-]\\d\\d):(\\d\\d)$", "$1$2");
+			if (value.endsWith("Z")) {
+				value = value.substring(0, value.length() - 1) + "+0000";
+			}
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(value).getTime();
+		} catch (ParseException e) {
+			Log.d(LOG_TAG, "invalid date: " + value);
 		}
+		return 0;
 	}
 
 	@Override
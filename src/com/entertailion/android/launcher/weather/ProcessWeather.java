@@ -15,7 +15,7 @@
  */
 package com.entertailion.android.launcher.weather;
 
-import java.io.StringReader;
+import java.io.InputStream;
 import java.net.SocketException;
 import java.util.Calendar;
 
@@ -33,6 +33,8 @@ import android.content.Context;
 import android.util.Log;
 
 import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+import com.entertailion.android.launcher.utils.HttpCache;
 import com.entertailion.android.launcher.utils.LocationData;
 import com.entertailion.android.launcher.utils.Utils;
 
@@ -42,9 +44,11 @@ import com.entertailion.android.launcher.utils.Utils;
  * @author leon_nicholls
  * 
  */
-public class ProcessWeather implements Runnable {
+public class ProcessWeather implements BackgroundScheduler.Job {
 	private static final String LOG_TAG = "ProcessWeather";
 
+	public static final String JOB_KEY = "weather";
+
 	public static String NOAA_URL = "http://forecast.weather.gov/MapClick.php?FcstType=dwml";
 
 	private Context context = null;
@@ -54,15 +58,20 @@ public class ProcessWeather implements Runnable {
 	}
 
 	@Override
-	public void run() {
-		LocationData locationData = ((LauncherApplication) context.getApplicationContext()).getLocationData();
+	public boolean execute() {
+		LauncherApplication application = (LauncherApplication) context.getApplicationContext();
+		boolean success = true;
+		LocationData locationData = application.getLocationData();
 		if (locationData != null) {
-			updateNoaa(locationData.getLatitude(), locationData.getLongitude());
+			success = updateNoaa(locationData.getLatitude(), locationData.getLongitude());
 		}
+		// schedule the next update based on the forecast
+		WeatherUpdater.getInstance(context).onUpdated(application.getWeatherSet());
+		return success;
 	}
 
 	// http://en.wikipedia.org/wiki/Severe_weather_terminology_(United_States)
-	private void updateNoaa(double latitudeValue, double longitudeValue) {
+	private boolean updateNoaa(double latitudeValue, double longitudeValue) {
 		Log.i(LOG_TAG, "About to get NOAA data");
 		try {
 			final String queryString = NOAA_URL + "&lat=" + latitudeValue + "&lon=" + longitudeValue; // http://forecast.weather.gov/MapClick.php?FcstType=dwml&lat=33.07871627807617&lon=-96.80830383300781
@@ -70,17 +79,27 @@ public class ProcessWeather implements Runnable {
 			// "http://forecast.weather.gov/MapClick.php?FcstType=dwml&lat=33.086936950683594&lon=-96.7601089477539";
 			// String queryString =
 			// "http://forecast.weather.gov/MapClick.php?FcstType=dwml&lat=30.1011833&lon=-89.99067339999999";
-			String data = Utils.getCachedData(context, queryString, true);
-			// data = Utils.readAssetFile(context, "weather.xml"); // testing
-			InputSource inStream = new org.xml.sax.InputSource();
-			inStream.setCharacterStream(new StringReader(data));
-			SAXParserFactory spf = SAXParserFactory.newInstance();
-			SAXParser sp = spf.newSAXParser();
-			XMLReader xr = sp.getXMLReader();
+			// parse the response as it is downloaded; the bytes are written
+			// to the cache at the same time
+			InputStream in = HttpCache.openStream(context, queryString, true);
+			if (in == null) {
+				Log.d(LOG_TAG, "No weather data");
+				return false;
+			}
 			NoaaWeatherHandler noaaWeatherHandler = new NoaaWeatherHandler(isDay());
-			xr.setContentHandler(noaaWeatherHandler);
-			Log.d(LOG_TAG, "Retrieving weather data from: " + queryString);
-			xr.parse(inStream);
+			try {
+				InputSource inStream = new org.xml.sax.InputSource();
+				// let the parser detect the document encoding
+				inStream.setByteStream(in);
+				SAXParserFactory spf = SAXParserFactory.newInstance();
+				SAXParser sp = spf.newSAXParser();
+				XMLReader xr = sp.getXMLReader();
+				xr.setContentHandler(noaaWeatherHandler);
+				Log.d(LOG_TAG, "Retrieving weather data from: " + queryString);
+				xr.parse(inStream);
+			} finally {
+				in.close();
+			}
 
 			WeatherSet currentWeather = noaaWeatherHandler.getWeatherSet();
 
@@ -89,7 +108,7 @@ public class ProcessWeather implements Runnable {
 				if (!currentWeather.getHazard().equalsIgnoreCase("Child Abduction Emergency")) {
 					// /data = new
 					// HttpRequestHelper().sendGet(currentWeather.getHazardUrl());
-					data = Utils.getCachedData(context, currentWeather.getHazardUrl(), true);
+					String data = Utils.getCachedData(context, currentWeather.getHazardUrl(), true);
 					// http://forecast.weather.gov/showsigwx.php?warnzone=TXZ104&warncounty=TXC085&firewxzone=TXZ104&local_place1=4+Miles+NW+Plano+TX&product1=Short+Term+Forecast
 					// http://forecast.weather.gov/showsigwx.php?warnzone=TXZ104&warncounty=TXC085&firewxzone=TXZ104&local_place1=4+Miles+NW+Plano+TX&product1=Dense+Fog+Advisory
 					// http://forecast.weather.gov/showsigwx.php?warnzone=TXZ104&warncounty=TXC085&firewxzone=TXZ104&local_place1=4+Miles+NW+Plano+TX&product1=Hazardous+Weather+Outlook
@@ -122,11 +141,18 @@ public class ProcessWeather implements Runnable {
 				}
 			}
 			((LauncherApplication) context.getApplicationContext()).setWeatherSet(currentWeather);
+			if (currentWeather != null) {
+				// show the weather immediately the next time the app starts
+				WeatherSnapshot.save(context, currentWeather);
+				return true;
+			}
+			return false;
 		} catch (SocketException sex) {
 			Log.e(LOG_TAG, "updateNoaa", sex);
 		} catch (Exception e) {
 			Log.e(LOG_TAG, "updateNoaa", e);
 		}
+		return false;
 	}
 
 	private boolean isDay() {
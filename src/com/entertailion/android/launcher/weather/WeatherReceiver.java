@@ -20,9 +20,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+
 /**
  * Receiver to download the weather data; Invoked by AlarmManager from
- * LauncherService
+ * WeatherUpdater
  * 
  * @author leon_nicholls
  * 
@@ -38,7 +40,10 @@ public class WeatherReceiver extends BroadcastReceiver {
 	@Override
 	public void onReceive(Context context, Intent arg1) {
 		Log.d(LOG_CAT, "onReceive");
-		new Thread(new ProcessWeather(context)).start();
+		// the updates are paused while the launcher is not visible
+		if (WeatherUpdater.getInstance(context).isVisible()) {
+			BackgroundScheduler.getInstance(context).submit(ProcessWeather.JOB_KEY, new ProcessWeather(context));
+		}
 	}
 
 }
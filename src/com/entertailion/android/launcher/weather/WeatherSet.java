@@ -30,6 +30,8 @@ public class WeatherSet {
 	private ArrayList<WeatherForecastCondition> myForecastConditions = new ArrayList<WeatherForecastCondition>(4);
 	private String hazard;
 	private String hazardUrl;
+	// time until the forecast is replaced by a newer one
+	private long validUntil;
 
 	public WeatherCurrentCondition getWeatherCurrentCondition() {
 		return myCurrentCondition;
@@ -62,4 +64,21 @@ public class WeatherSet {
 	public void setHazardUrl(String hazardUrl) {
 		this.hazardUrl = hazardUrl;
 	}
+
+	public long getValidUntil() {
+		return this.validUntil;
+	}
+
+	public void setValidUntil(long validUntil) {
+		this.validUntil = validUntil;
+	}
+
+	/**
+	 * Check if a newer forecast could be available.
+	 * 
+	 * @return
+	 */
+	public boolean isStale() {
+		return System.currentTimeMillis() >= this.validUntil;
+	}
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.weather;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+/**
+ * Store the latest weather data in a file so that the weather widget can be
+ * displayed immediately when the app is restarted. The snapshot is written
+ * to a temporary file which replaces the previous snapshot, so a crash while
+ * writing never leaves a partial snapshot.
+ * 
+ * The icons are stored by resource name since the resource ids can change
+ * between versions of the app.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class WeatherSnapshot {
+	private static final String LOG_TAG = "WeatherSnapshot";
+
+	private static final String FILE_NAME = "weather.json";
+	private static final int VERSION = 1;
+	// the forecast days are not useful after a day
+	private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+
+	private static final String VERSION_KEY = "version";
+	private static final String TIMESTAMP_KEY = "timestamp";
+	private static final String VALID_UNTIL_KEY = "validUntil";
+	private static final String HAZARD_KEY = "hazard";
+	private static final String HAZARD_URL_KEY = "hazardUrl";
+	private static final String CURRENT_KEY = "current";
+	private static final String FORECAST_KEY = "forecast";
+	private static final String DAY_KEY = "day";
+	private static final String TEMP_CELSIUS_KEY = "tempCelsius";
+	private static final String TEMP_FAHRENHEIT_KEY = "tempFahrenheit";
+	private static final String TEMP_MIN_KEY = "tempMin";
+	private static final String TEMP_MAX_KEY = "tempMax";
+	private static final String ICON_KEY = "icon";
+	private static final String ICON_URL_KEY = "iconUrl";
+	private static final String CONDITION_KEY = "condition";
+	private static final String WIND_KEY = "wind";
+	private static final String HUMIDITY_KEY = "humidity";
+
+	/**
+	 * Replace the snapshot with the latest weather data.
+	 * 
+	 * @param context
+	 * @param weatherSet
+	 * @return true if the snapshot was saved
+	 */
+	public static synchronized boolean save(Context context, WeatherSet weatherSet) {
+		File file = context.getFileStreamPath(FILE_NAME);
+		File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+		Writer writer = null;
+		try {
+			String json = toJson(context.getResources(), weatherSet).toString();
+			FileOutputStream out = new FileOutputStream(temp);
+			writer = new OutputStreamWriter(out, "UTF-8");
+			writer.write(json);
+			writer.flush();
+			// make sure the data is on disk before the rename
+			out.getFD().sync();
+			writer.close();
+			writer = null;
+			if (temp.renameTo(file)) {
+				return true;
+			}
+			Log.e(LOG_TAG, "save: rename failed");
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "save", e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+		temp.delete();
+		return false;
+	}
+
+	/**
+	 * Load the weather data of the last snapshot.
+	 * 
+	 * @param context
+	 * @return the weather data or null if there is no recent snapshot
+	 */
+	public static synchronized WeatherSet load(Context context) {
+		File file = context.getFileStreamPath(FILE_NAME);
+		if (!file.exists()) {
+			return null;
+		}
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			StringBuilder builder = new StringBuilder((int) file.length());
+			char[] buffer = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				builder.append(buffer, 0, count);
+			}
+			JSONObject json = new JSONObject(builder.toString());
+			if (json.optInt(VERSION_KEY) != VERSION) {
+				Log.d(LOG_TAG, "load: unsupported version");
+				return null;
+			}
+			long age = System.currentTimeMillis() - json.optLong(TIMESTAMP_KEY);
+			if (age < 0 || age > MAX_AGE) {
+				Log.d(LOG_TAG, "load: snapshot too old");
+				return null;
+			}
+			return fromJson(context.getResources(), context.getPackageName(), json);
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "load", e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+		return null;
+	}
+
+	private static JSONObject toJson(Resources resources, WeatherSet weatherSet) throws Exception {
+		JSONObject json = new JSONObject();
+		json.put(VERSION_KEY, VERSION);
+		json.put(TIMESTAMP_KEY, System.currentTimeMillis());
+		json.put(VALID_UNTIL_KEY, weatherSet.getValidUntil());
+		json.putOpt(HAZARD_KEY, weatherSet.getHazard());
+		json.putOpt(HAZARD_URL_KEY, weatherSet.getHazardUrl());
+		WeatherCurrentCondition currentCondition = weatherSet.getWeatherCurrentCondition();
+		if (currentCondition != null) {
+			JSONObject current = new JSONObject();
+			current.putOpt(DAY_KEY, currentCondition.getDayofWeek());
+			current.putOpt(TEMP_CELSIUS_KEY, currentCondition.getTempCelcius());
+			current.putOpt(TEMP_FAHRENHEIT_KEY, currentCondition.getTempFahrenheit());
+			current.putOpt(ICON_KEY, getIconName(resources, currentCondition.getIcon()));
+			current.putOpt(ICON_URL_KEY, currentCondition.getIconURL());
+			current.putOpt(CONDITION_KEY, currentCondition.getCondition());
+			current.putOpt(WIND_KEY, currentCondition.getWindCondition());
+			current.putOpt(HUMIDITY_KEY, currentCondition.getHumidity());
+			json.put(CURRENT_KEY, current);
+		}
+		JSONArray forecast = new JSONArray();
+		for (WeatherForecastCondition forecastCondition : weatherSet.getWeatherForecastConditions()) {
+			JSONObject day = new JSONObject();
+			day.putOpt(DAY_KEY, forecastCondition.getDayofWeek());
+			day.put(TEMP_MIN_KEY, forecastCondition.getTempMinCelsius());
+			day.put(TEMP_MAX_KEY, forecastCondition.getTempMaxCelsius());
+			day.putOpt(ICON_KEY, getIconName(resources, forecastCondition.getIcon()));
+			day.putOpt(ICON_URL_KEY, forecastCondition.getIconURL());
+			day.putOpt(CONDITION_KEY, forecastCondition.getCondition());
+			forecast.put(day);
+		}
+		json.put(FORECAST_KEY, forecast);
+		return json;
+	}
+
+	private static WeatherSet fromJson(Resources resources, String packageName, JSONObject json) throws Exception {
+		WeatherSet weatherSet = new WeatherSet();
+		weatherSet.setValidUntil(json.optLong(VALID_UNTIL_KEY));
+		weatherSet.setHazard(optString(json, HAZARD_KEY));
+		weatherSet.setHazardUrl(optString(json, HAZARD_URL_KEY));
+		JSONObject current = json.optJSONObject(CURRENT_KEY);
+		if (current != null) {
+			WeatherCurrentCondition currentCondition = new WeatherCurrentCondition();
+			currentCondition.setDayofWeek(optString(current, DAY_KEY));
+			if (current.has(TEMP_CELSIUS_KEY)) {
+				currentCondition.setTempCelcius(current.getInt(TEMP_CELSIUS_KEY));
+			}
+			if (current.has(TEMP_FAHRENHEIT_KEY)) {
+				currentCondition.setTempFahrenheit(current.getInt(TEMP_FAHRENHEIT_KEY));
+			}
+			currentCondition.setIcon(getIcon(resources, packageName, optString(current, ICON_KEY)));
+			currentCondition.setIconURL(optString(current, ICON_URL_KEY));
+			currentCondition.setCondition(optString(current, CONDITION_KEY));
+			currentCondition.setWindCondition(optString(current, WIND_KEY));
+			currentCondition.setHumidity(optString(current, HUMIDITY_KEY));
+			weatherSet.setWeatherCurrentCondition(currentCondition);
+		}
+		JSONArray forecast = json.optJSONArray(FORECAST_KEY);
+		if (forecast != null) {
+			for (int i = 0; i < forecast.length(); i++) {
+				JSONObject day = forecast.getJSONObject(i);
+				WeatherForecastCondition forecastCondition = new WeatherForecastCondition();
+				forecastCondition.setDayofWeek(optString(day, DAY_KEY));
+				forecastCondition.setTempMinCelsius((float) day.optDouble(TEMP_MIN_KEY));
+				forecastCondition.setTempMaxCelsius((float) day.optDouble(TEMP_MAX_KEY));
+				forecastCondition.setIcon(getIcon(resources, packageName, optString(day, ICON_KEY)));
+				forecastCondition.setIconURL(optString(day, ICON_URL_KEY));
+				forecastCondition.setCondition(optString(day, CONDITION_KEY));
+				weatherSet.getWeatherForecastConditions().add(forecastCondition);
+			}
+		}
+		return weatherSet;
+	}
+
+	private static String optString(JSONObject json, String key) {
+		// optString returns "" for missing values
+		return json.isNull(key) ? null : json.optString(key);
+	}
+
+	private static String getIconName(Resources resources, int icon) {
+		if (icon == 0) {
+			return null;
+		}
+		try {
+			return resources.getResourceEntryName(icon);
+		} catch (Resources.NotFoundException e) {
+			return null;
+		}
+	}
+
+	private static int getIcon(Resources resources, String packageName, String name) {
+		if (name == null) {
+			return 0;
+		}
+		return resources.getIdentifier(name, "drawable", packageName);
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.weather;
+
+import java.util.ArrayList;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.entertailion.android.launcher.LauncherApplication;
+import com.entertailion.android.launcher.utils.BackgroundScheduler;
+import com.entertailion.android.launcher.utils.Utils;
+
+/**
+ * Schedule the weather updates. The weather is only updated while the
+ * launcher is visible: the next update is scheduled when the current forecast
+ * expires, or sooner while a hazard is active. When the launcher becomes
+ * visible with a stale forecast, the weather is updated immediately.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class WeatherUpdater {
+	private static final String LOG_TAG = "WeatherUpdater";
+
+	// poll interval while a hazard is active
+	private static final long HAZARD_INTERVAL = 10 * 60 * 1000;
+	// bounds for the interval between updates
+	private static final long MIN_INTERVAL = 15 * 60 * 1000;
+	private static final long MAX_INTERVAL = 3 * 60 * 60 * 1000;
+
+	/**
+	 * Listener for weather changes. Called on the main thread.
+	 */
+	public interface Listener {
+		void onWeatherChanged(WeatherSet weatherSet);
+	}
+
+	private Context context;
+	private Handler handler;
+	private boolean visible;
+	private ArrayList<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * @param context
+	 */
+	public WeatherUpdater(Context context) {
+		this.context = context.getApplicationContext();
+		handler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * Get the shared weather updater owned by the application.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static WeatherUpdater getInstance(Context context) {
+		return ((LauncherApplication) context.getApplicationContext()).getWeatherUpdater();
+	}
+
+	public void addListener(Listener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Track the visibility of the launcher. The updates are paused while the
+	 * launcher is not visible.
+	 * 
+	 * @param visible
+	 */
+	public synchronized void setVisible(boolean visible) {
+		this.visible = visible;
+		// free weather data only supported for USA
+		if (!Utils.isUsa()) {
+			return;
+		}
+		if (visible) {
+			WeatherSet weatherSet = getWeatherSet();
+			if (weatherSet == null || weatherSet.isStale()) {
+				update();
+			} else {
+				scheduleNext();
+			}
+		} else {
+			Log.d(LOG_TAG, "pause updates");
+			getAlarmManager().cancel(getPendingIntent());
+		}
+	}
+
+	public synchronized boolean isVisible() {
+		return visible;
+	}
+
+	/**
+	 * Update the weather in the background.
+	 */
+	public void update() {
+		BackgroundScheduler.getInstance(context).submit(ProcessWeather.JOB_KEY, new ProcessWeather(context));
+	}
+
+	/**
+	 * Called after each update attempt. Notifies the listeners and schedules
+	 * the next update.
+	 * 
+	 * @param weatherSet
+	 *            the latest weather data
+	 */
+	public void onUpdated(final WeatherSet weatherSet) {
+		handler.post(new Runnable() {
+			public void run() {
+				for (Listener listener : new ArrayList<Listener>(listeners)) {
+					listener.onWeatherChanged(weatherSet);
+				}
+			}
+		});
+		scheduleNext();
+	}
+
+	/**
+	 * Schedule the next update with an alarm that does not wake up the device.
+	 */
+	private synchronized void scheduleNext() {
+		if (!visible) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long interval;
+		WeatherSet weatherSet = getWeatherSet();
+		if (weatherSet != null && weatherSet.getHazard() != null) {
+			interval = HAZARD_INTERVAL;
+		} else if (weatherSet != null) {
+			interval = Math.max(MIN_INTERVAL, Math.min(weatherSet.getValidUntil() - now, MAX_INTERVAL));
+		} else {
+			interval = MIN_INTERVAL;
+		}
+		Log.d(LOG_TAG, "next update in " + interval / 1000 + "s");
+		getAlarmManager().set(AlarmManager.RTC, now + interval, getPendingIntent());
+	}
+
+	private WeatherSet getWeatherSet() {
+		return ((LauncherApplication) context).getWeatherSet();
+	}
+
+	private AlarmManager getAlarmManager() {
+		return (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+	}
+
+	private PendingIntent getPendingIntent() {
+		return PendingIntent.getBroadcast(context, 0, new Intent(context, WeatherReceiver.class), 0);
+	}
+
+}
@@ -16,6 +16,7 @@
 package com.entertailion.android.launcher.widget;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import android.content.Context;
 import android.util.Log;
@@ -27,6 +28,7 @@ import android.widget.ImageView.ScaleType;
 
 import com.entertailion.android.launcher.R;
 import com.entertailion.android.launcher.item.ItemInfo;
+import com.entertailion.android.launcher.utils.IconLoader;
 
 /**
  * Base adapter for row galleries.
@@ -59,6 +61,44 @@ public class GalleryAdapter<T> extends ArrayAdapter<T> {
 		return super.getCount();
 	}
 
+	/**
+	 * Check if the adapter already holds the same item instances in the same
+	 * order. Items changed in place are not detected.
+	 * 
+	 * @param items
+	 * @return
+	 */
+	public boolean hasItems(List<? extends T> items) {
+		int count = getRealCount();
+		if (items == null) {
+			return count == 0;
+		}
+		if (items.size() != count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (getItem(i) != items.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replace the items of the adapter with a single data set change
+	 * notification.
+	 * 
+	 * @param items
+	 */
+	public void setItems(List<? extends T> items) {
+		setNotifyOnChange(false);
+		clear();
+		if (items != null) {
+			addAll(items);
+		}
+		notifyDataSetChanged();
+	}
+
 	@Override
 	public View getView(int position, View convertView, ViewGroup parent) {
 		if (infiniteScrolling && super.getCount() > 0) {
@@ -76,14 +116,22 @@ public class GalleryAdapter<T> extends ArrayAdapter<T> {
 			iconView.setBackgroundColor(getContext().getResources().getColor(R.color.transparent));
 		}
 
+		// cancel the icon still loading for the item the view displayed
+		// before; the same position can hold another item after the items
+		// were replaced
+		Object item = getItem(position);
+		if (iconView.getTag(R.id.bound_item) != item) {
+			IconLoader.getInstance(getContext()).cancel(iconView);
+		}
 		try {
 			updateView(iconView, position);
-			ItemInfo itemInfo = (ItemInfo) getItem(position);
+			ItemInfo itemInfo = (ItemInfo) item;
 			iconView.setContentDescription(itemInfo.getTitle());
 		} catch (Exception e) {
 			Log.d(LOG_TAG, "getView", e);
 		}
 		iconView.setTag(R.id.pager_position, position);
+		iconView.setTag(R.id.bound_item, item);
 		return iconView;
 	}
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 ENTERTAILION LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.entertailion.android.launcher.widget;
+
+import java.util.WeakHashMap;
+
+import android.database.DataSetObserver;
+import android.os.SystemClock;
+import android.widget.Adapter;
+
+import com.entertailion.android.launcher.item.ItemInfo;
+import com.entertailion.android.launcher.row.RowInfo;
+
+/**
+ * Index of the item titles of an adapter to jump to the items typed by the
+ * user. The index is built once for the data of the adapter and is
+ * discarded when the data changes. The first letter of a title is found in
+ * constant time; letters typed in quick succession are matched as a prefix
+ * against the titles with the same first letter only.
+ * 
+ * Only used on the UI thread.
+ * 
+ * @author leon_nicholls
+ * 
+ */
+public class PrefixIndex {
+	// letters typed within the timeout extend the prefix
+	private static final long TYPING_TIMEOUT = 1000;
+	private static final int LETTERS = 26;
+
+	private static WeakHashMap<Adapter, PrefixIndex> indexes = new WeakHashMap<Adapter, PrefixIndex>();
+
+	// upper case titles by position
+	private String[] titles;
+	// positions of the titles for each first letter, in order
+	private int[][] letterPositions = new int[LETTERS][];
+	private StringBuilder prefix = new StringBuilder();
+	private long lastKeyTime;
+
+	/**
+	 * Get the index for the current data of an adapter.
+	 * 
+	 * @param adapter
+	 * @return
+	 */
+	public static PrefixIndex getInstance(final Adapter adapter) {
+		PrefixIndex prefixIndex = indexes.get(adapter);
+		if (prefixIndex == null) {
+			if (!indexes.containsKey(adapter)) {
+				// discard the index when the data changes
+				adapter.registerDataSetObserver(new DataSetObserver() {
+					@Override
+					public void onChanged() {
+						indexes.put(adapter, null);
+					}
+
+					@Override
+					public void onInvalidated() {
+						indexes.put(adapter, null);
+					}
+				});
+			}
+			prefixIndex = new PrefixIndex(adapter);
+			indexes.put(adapter, prefixIndex);
+		}
+		return prefixIndex;
+	}
+
+	private PrefixIndex(Adapter adapter) {
+		// infinite scrolling galleries repeat the same items
+		int count = adapter instanceof GalleryAdapter ? ((GalleryAdapter<?>) adapter).getRealCount() : adapter.getCount();
+		titles = new String[count];
+		int[] letterCounts = new int[LETTERS];
+		for (int i = 0; i < count; i++) {
+			String title = getTitle(adapter.getItem(i));
+			titles[i] = title == null ? "" : title.trim().toUpperCase();
+			int letter = getLetterIndex(titles[i]);
+			if (letter != -1) {
+				letterCounts[letter]++;
+			}
+		}
+		for (int letter = 0; letter < LETTERS; letter++) {
+			letterPositions[letter] = new int[letterCounts[letter]];
+			letterCounts[letter] = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			int letter = getLetterIndex(titles[i]);
+			if (letter != -1) {
+				letterPositions[letter][letterCounts[letter]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Find the item for a typed letter. The letter is appended to the letters
+	 * typed just before; if no title starts with the combined prefix, the
+	 * search restarts with the letter alone.
+	 * 
+	 * @param letter
+	 *            upper case letter A-Z
+	 * @return the position of the item or -1 if there is no match
+	 */
+	public int onLetter(char letter) {
+		long now = SystemClock.uptimeMillis();
+		if (now - lastKeyTime > TYPING_TIMEOUT) {
+			prefix.setLength(0);
+		}
+		lastKeyTime = now;
+		prefix.append(letter);
+		int position = getPosition(prefix.toString());
+		if (position == -1 && prefix.length() > 1) {
+			prefix.setLength(0);
+			prefix.append(letter);
+			position = getPosition(prefix.toString());
+		}
+		return position;
+	}
+
+	/**
+	 * Find the first item with a title that starts with a prefix.
+	 * 
+	 * @param prefix
+	 *            upper case prefix
+	 * @return the position of the item or -1 if there is no match
+	 */
+	public int getPosition(String prefix) {
+		int letter = getLetterIndex(prefix);
+		if (letter == -1) {
+			return -1;
+		}
+		int[] positions = letterPositions[letter];
+		if (prefix.length() == 1) {
+			return positions.length > 0 ? positions[0] : -1;
+		}
+		for (int position : positions) {
+			if (titles[position].startsWith(prefix)) {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	private static int getLetterIndex(String title) {
+		if (title.length() > 0) {
+			char letter = title.charAt(0);
+			if (letter >= 'A' && letter <= 'Z') {
+				return letter - 'A';
+			}
+		}
+		return -1;
+	}
+
+	private static String getTitle(Object item) {
+		if (item instanceof ItemInfo) {
+			return ((ItemInfo) item).getTitle();
+		} else if (item instanceof RowInfo) {
+			return ((RowInfo) item).getTitle();
+		} else if (item != null) {
+			return item.toString();
+		}
+		return null;
+	}
+
+}
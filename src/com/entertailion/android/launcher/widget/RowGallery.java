@@ -15,6 +15,8 @@
  */
 package com.entertailion.android.launcher.widget;
 
+import java.util.List;
+
 import android.util.Log;
 import android.view.Gravity;
 import android.view.KeyEvent;
@@ -63,16 +65,18 @@ public class RowGallery extends LinearLayout {
 			public boolean onKey(View v, int keyCode, KeyEvent event) {
 				if (event.getAction() == KeyEvent.ACTION_DOWN) {
 					if (keyCode >= KeyEvent.KEYCODE_A && keyCode <= KeyEvent.KEYCODE_Z) {
-						// Jump to first item that starts with the typed letter
-						char letter = Utils.keyCodeToLetter(keyCode);
-						int count = gallery.getAdapter().getCount();
-						for (int i = 0; i < count; i++) {
-							ItemInfo itemInfo = (ItemInfo) gallery.getAdapter().getItem(i);
-							if (itemInfo.getTitle().toUpperCase().charAt(0) == letter) {
-								gallery.setSelection(i);
-								break;
+						// Jump to first item that starts with the typed letters
+						GalleryAdapter adapter = getAdapter();
+						int position = PrefixIndex.getInstance(adapter).onLetter(Utils.keyCodeToLetter(keyCode));
+						if (position != -1) {
+							// stay in the same cycle of an infinite scrolling
+							// gallery
+							int selected = gallery.getSelectedItemPosition();
+							int count = adapter.getRealCount();
+							if (selected > 0 && count > 0) {
+								position += selected - selected % count;
 							}
-
+							gallery.setSelection(position);
 						}
 						return true;
 					} else if (keyCode == KeyEvent.KEYCODE_MEDIA_NEXT) {
@@ -153,6 +157,42 @@ public class RowGallery extends LinearLayout {
 	public Object getTag(int key) {
 		return gallery.getTag(key);
 	}
+
+	/**
+	 * Remember the version of the model row the items were bound from.
+	 * 
+	 * @param version
+	 */
+	public void setVersion(int version) {
+		gallery.setTag(R.id.row_version, version);
+	}
+
+	/**
+	 * Update the title of the row.
+	 * 
+	 * @param title
+	 */
+	public void setTitle(String title) {
+		gallery.setTag(R.id.gallery_title, title);
+	}
+
+	/**
+	 * Replace the items in the row while keeping the selection if possible.
+	 * 
+	 * @param items
+	 */
+	public void updateItems(List<? extends ItemInfo> items) {
+		GalleryAdapter<ItemInfo> adapter = (GalleryAdapter<ItemInfo>) getAdapter();
+		int position = gallery.getSelectedItemPosition();
+		adapter.setItems(items);
+		int count = adapter.getCount();
+		if (position >= count) {
+			position = count - 1;
+		}
+		if (position >= 0) {
+			setSelectedItemPosition(position);
+		}
+	}
 	
 	public void setAnimation(boolean animate) {
 		if (animate) {
@@ -16,12 +16,9 @@
 package com.entertailion.android.launcher.widget;
 
 import java.util.Calendar;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import android.content.Context;
 import android.graphics.Typeface;
-import android.os.Handler;
 import android.text.format.DateUtils;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -35,23 +32,19 @@ import com.entertailion.android.launcher.LauncherApplication;
 import com.entertailion.android.launcher.R;
 import com.entertailion.android.launcher.utils.Utils;
 import com.entertailion.android.launcher.weather.WeatherSet;
+import com.entertailion.android.launcher.weather.WeatherUpdater;
 
 /**
  * Weather widget. Displays current weather and 4-day forecast from NOAA weather
- * data.
+ * data. The widget is refreshed by the WeatherUpdater when new data is
+ * downloaded.
  * 
  * @author leon_nicholls
  * 
  */
-public class Weather extends LinearLayout {
+public class Weather extends LinearLayout implements WeatherUpdater.Listener {
 	private static String LOG_TAG = "Weather";
 	private static String DEGREES = "\u00B0";
-	private static int DEFAULT_DELAY = 10 * 1000;
-	private static int MAX_RETRIES = 20;
-	private Timer timer;
-	private Handler handler = new Handler();
-	private int delay = DEFAULT_DELAY;
-	private int retries = 0;
 	private ProgressBar progressBar;
 	private boolean isFahrenheit = true;
 
@@ -79,15 +72,37 @@ public class Weather extends LinearLayout {
 		}
 
 		// only have free weather data for USA
-		if (Utils.isUsa()) {
-			start();
-		} else {
+		if (!Utils.isUsa()) {
 			progressBar.setVisibility(View.INVISIBLE);
 		}
 	}
 
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		// only have free weather data for USA
+		if (!isInEditMode() && Utils.isUsa()) {
+			WeatherUpdater.getInstance(getContext()).addListener(this);
+			updateView();
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		if (!isInEditMode() && Utils.isUsa()) {
+			WeatherUpdater.getInstance(getContext()).removeListener(this);
+		}
+		super.onDetachedFromWindow();
+	}
+
+	@Override
+	public void onWeatherChanged(WeatherSet weatherSet) {
+		Log.d(LOG_TAG, "onWeatherChanged");
+		setWeather(weatherSet);
+	}
+
 	/**
-	 * Update the text with the current time
+	 * Update the view with the current weather data
 	 */
 	public void updateView() {
 		Log.d(LOG_TAG, "updateView");
@@ -95,22 +110,8 @@ public class Weather extends LinearLayout {
 		if (weatherSet != null) {
 			setWeather(weatherSet);
 		} else {
-			// could be the first time run, so try again to get weather
+			// could be the first time run; wait for the updater
 			progressBar.setVisibility(View.VISIBLE);
-			Runnable runnable = new Runnable() {
-				public void run() {
-					Log.d(LOG_TAG, "weather run: "+delay);
-					WeatherSet weatherSet = ((LauncherApplication) getContext().getApplicationContext()).getWeatherSet();
-					if (weatherSet == null && retries < MAX_RETRIES) {
-						retries++;
-						//delay = delay * 2;
-						handler.postDelayed(this, delay);
-					} else {
-						setWeather(weatherSet);
-					}
-				}
-			};
-			handler.postDelayed(runnable, delay);
 		}
 	}
 
@@ -221,34 +222,9 @@ public class Weather extends LinearLayout {
 			}
 		}
 
-		retries = 0;
-		delay = DEFAULT_DELAY;
 		progressBar.setVisibility(View.INVISIBLE);
 	}
 
-	/**
-	 * Thread to update weather every hour
-	 */
-	public void start() {
-		timer = new Timer();
-		timer.scheduleAtFixedRate(new TimerTask() {
-			public void run() {
-				handler.post(new Runnable() {
-					public void run() {
-						updateView();
-					}
-				});
-			}
-		}, 0, 1000 * 60 * 60); // every hour since NOAA data is published once an hour
-	}
-
-	/**
-	 * Stop the update thread
-	 */
-	public void stop() {
-		timer.cancel();
-	}
-
 	private String getDay(String value) {
 		if (value != null) {
 			if (value.equalsIgnoreCase("Mon") || value.equalsIgnoreCase("Monday") || value.equalsIgnoreCase("Monday Night")) {